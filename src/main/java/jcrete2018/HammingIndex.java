@@ -0,0 +1,147 @@
+package jcrete2018;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.OptionalLong;
+import static org.tweetwall.util.ToString.*;
+
+/**
+ * BK-tree of 64 bit hashes, each associated with an id, supporting lookups of
+ * the nearest hash within a maximum Hamming distance.
+ * <p>
+ * The children of a node are kept as a linked list of siblings, each storing
+ * its distance to the parent, so a node costs a fixed handful of fields no
+ * matter how many distances occur. Lookups only descend into children whose
+ * distance to the parent is within {@code maxDistance} of the distance between
+ * the parent and the looked up hash, visiting a small fraction of the nodes
+ * for small distances.
+ * <p>
+ * Instances are safe for use by multiple threads.
+ */
+final class HammingIndex {
+
+    private Node root;
+    private int size;
+
+    /**
+     * Adds the {@code hash} associated with {@code id}. Hashes already
+     * contained are kept associated with their first id.
+     *
+     * @param hash the hash to add
+     *
+     * @param id the id associated with the hash
+     */
+    synchronized void add(final long hash, final long id) {
+        if (null == root) {
+            root = new Node(hash, id, 0);
+            size++;
+            return;
+        }
+
+        Node node = root;
+
+        while (true) {
+            final int distance = Long.bitCount(node.hash ^ hash);
+
+            if (0 == distance) {
+                return;
+            }
+
+            Node child = node.firstChild;
+
+            while (null != child && child.distance != distance) {
+                child = child.nextSibling;
+            }
+
+            if (null == child) {
+                final Node added = new Node(hash, id, distance);
+                added.nextSibling = node.firstChild;
+                node.firstChild = added;
+                size++;
+                return;
+            }
+
+            node = child;
+        }
+    }
+
+    /**
+     * Returns the id of the hash nearest to {@code hash} with a Hamming
+     * distance of at most {@code maxDistance}.
+     *
+     * @param hash the hash to look up
+     *
+     * @param maxDistance the maximum Hamming distance
+     *
+     * @return the id of the nearest hash or an empty Optional if there is no
+     * hash within {@code maxDistance}
+     */
+    synchronized OptionalLong findNearest(final long hash, final int maxDistance) {
+        if (null == root || maxDistance < 0) {
+            return OptionalLong.empty();
+        }
+
+        final Deque<Node> pending = new ArrayDeque<>();
+        Node nearest = null;
+        int nearestDistance = maxDistance + 1;
+        pending.push(root);
+
+        while (!pending.isEmpty()) {
+            final Node node = pending.pop();
+            final int distance = Long.bitCount(node.hash ^ hash);
+
+            if (distance < nearestDistance) {
+                nearest = node;
+                nearestDistance = distance;
+
+                if (0 == distance) {
+                    break;
+                }
+            }
+
+            // triangle inequality: only children within this band can match better
+            final int bound = nearestDistance - 1;
+
+            for (Node child = node.firstChild; null != child; child = child.nextSibling) {
+                if (Math.abs(child.distance - distance) <= bound) {
+                    pending.push(child);
+                }
+            }
+        }
+
+        return null == nearest
+                ? OptionalLong.empty()
+                : OptionalLong.of(nearest.id);
+    }
+
+    /**
+     * Returns the number of distinct hashes in this index.
+     *
+     * @return the number of distinct hashes
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return createToString(this, map(
+                "size", size()
+        ));
+    }
+
+    private static final class Node {
+
+        private final long hash;
+        private final long id;
+        private final int distance;
+        private Node firstChild;
+        private Node nextSibling;
+
+        private Node(final long hash, final long id, final int distance) {
+            this.hash = hash;
+            this.id = id;
+            this.distance = distance;
+        }
+    }
+}
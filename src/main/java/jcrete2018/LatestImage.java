@@ -1,15 +1,65 @@
 package jcrete2018;
 
-import java.net.URLEncoder;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.ejb.Startup;
 import javax.inject.Singleton;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseBroadcaster;
+import javax.ws.rs.sse.SseEventSink;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.tweetwallfx.config.Configuration;
+import org.tweetwallfx.tweet.api.Tweet;
+import org.tweetwallfx.tweet.api.TweetFilterQuery;
 import org.tweetwallfx.tweet.api.TweetQuery;
 import org.tweetwallfx.tweet.api.Tweeter;
+import org.tweetwallfx.tweet.api.entry.MediaTweetEntry;
 import org.tweetwallfx.tweet.api.entry.MediaTweetEntryType;
 import org.tweetwallfx.tweet.impl.twitter4j.TwitterTweeter;
 
@@ -18,30 +68,336 @@ import org.tweetwallfx.tweet.impl.twitter4j.TwitterTweeter;
 @Path("")
 public class LatestImage {
 
+    private static final Logger LOGGER = LogManager.getLogger(LatestImage.class);
+    private static final int MEDIA_FETCH_THREADS = 4;
+    private static final int MEDIA_MAX_AGE = (int) TimeUnit.DAYS.toSeconds(365);
+    private static final AtomicInteger MEDIA_THREAD_COUNTER = new AtomicInteger();
+    private static final int PREFETCH_MAX_SEEN = 10_000;
+    private static final int HASH_TIMEOUT_SECONDS = 5;
+
     private final Tweeter tweeter = new TwitterTweeter();
+    private final LatestImageSettings settings = Configuration.getInstance()
+            .getConfigTyped(LatestImageSettings.CONFIG_KEY, LatestImageSettings.class, new LatestImageSettings());
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(new Snapshot(""));
+    private final CompletableFuture<Void> firstRefresh = new CompletableFuture<>();
+    private ScheduledExecutorService refresher;
+    private ExecutorService mediaFetcher;
+    private ExecutorService mediaResizer;
+    private MediaCache mediaCache;
+    private MediaDeduplicator mediaDeduplicator;
+    private volatile Sse sse;
+    private volatile SseBroadcaster broadcaster;
+
+    @PostConstruct
+    void startRefresher() {
+        mediaFetcher = Executors.newFixedThreadPool(MEDIA_FETCH_THREADS, r -> {
+            final Thread thread = new Thread(r, "LatestImage-MediaFetcher-" + MEDIA_THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        mediaResizer = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            final Thread thread = new Thread(r, "LatestImage-MediaResizer-" + MEDIA_THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        mediaCache = new MediaCache(Paths.get(settings.getMediaCacheDirectory()), settings.getMediaCacheMaxBytes(), mediaFetcher, mediaResizer);
+        mediaDeduplicator = new MediaDeduplicator(mediaCache, mediaResizer, settings.getDuplicateMaxDistance());
+        startPrefetcher();
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "LatestImage-Refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.execute(this::restore);
+        refresher.scheduleWithFixedDelay(this::refresh, 0, settings.getPollInterval(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * Prefetches the photos of Tweets streamed for the query, so that new
+     * images are usually stored locally by the time a search finds them.
+     */
+    private void startPrefetcher() {
+        if (settings.getPrefetchMaxInFlight() <= 0) {
+            return;
+        }
+
+        final MediaPrefetcher prefetcher = new MediaPrefetcher(mediaCache, mediaDeduplicator, settings.getPrefetchMaxInFlight(), PREFETCH_MAX_SEEN);
+
+        try {
+            tweeter.createTweetStream(new TweetFilterQuery().track(new String[]{settings.getQuery()}))
+                    .onTweet(prefetcher);
+        } catch (RuntimeException ex) {
+            // images are still downloaded on first request
+            LOGGER.error("Error starting media prefetcher", ex);
+        }
+    }
 
+    @PreDestroy
+    void stopRefresher() {
+        if (null != refresher) {
+            refresher.shutdownNow();
+        }
+
+        tweeter.shutdown();
+
+        if (null != mediaFetcher) {
+            mediaFetcher.shutdownNow();
+        }
+
+        if (null != mediaResizer) {
+            mediaResizer.shutdownNow();
+        }
+
+        if (null != broadcaster) {
+            broadcaster.close();
+        }
+    }
+
+    /**
+     * Serves the current snapshot. Requests arriving before the first refresh
+     * has finished are suspended until it has, without blocking a request
+     * thread.
+     * <p>
+     * The response carries a strong ETag and the Last-Modified time of the
+     * snapshot. Conditional requests matching the current snapshot are
+     * answered with {@code 304 Not Modified}.
+     *
+     * @param request the request to evaluate preconditions against
+     *
+     * @param asyncResponse the response to resume with the page
+     */
     @Path("latest")
     @GET
     @Produces(value = MediaType.TEXT_HTML)
-    public String page() {
-        final String mediaUrl = tweeter.search(
-                new TweetQuery()
-                        .resultType(TweetQuery.ResultType.recent)
-                        .query("JCreteCharity")
-                        //                        .query("bitsofpluto")
-                        .count(10))
-                .flatMap(t -> Arrays.stream(t.getMediaEntries()))
+    public void page(@Context final Request request, @Suspended final AsyncResponse asyncResponse) {
+        if (firstRefresh.isDone()) {
+            asyncResponse.resume(respond(request, snapshot.get()));
+        } else {
+            asyncResponse.setTimeoutHandler(response -> response.resume(respond(request, snapshot.get())));
+            asyncResponse.setTimeout(settings.getPollInterval(), TimeUnit.SECONDS);
+            firstRefresh.thenRun(() -> asyncResponse.resume(respond(request, snapshot.get())));
+        }
+    }
+
+    private Response respond(final Request request, final Snapshot current) {
+        final CacheControl cacheControl = new CacheControl();
+        cacheControl.setMaxAge(settings.getPollInterval());
+        cacheControl.setMustRevalidate(true);
+
+        final Response.ResponseBuilder notModified = request.evaluatePreconditions(current.lastModified, current.entityTag);
+        final Response.ResponseBuilder builder = null == notModified
+                ? Response.ok(current.html, MediaType.TEXT_HTML_TYPE)
+                : notModified;
+
+        return builder
+                .tag(current.entityTag)
+                .lastModified(current.lastModified)
+                .cacheControl(cacheControl)
+                .build();
+    }
+
+    /**
+     * Streams the URL of the latest image as Server-Sent Events named
+     * {@code image}. The current URL is sent on subscription and a new event
+     * only when the URL changes, so the number of subscribed displays does not
+     * affect the load on twitter.
+     *
+     * @param eventSink the sink of the subscribing client
+     *
+     * @param sse the Server-Sent Events context
+     */
+    @Path("latest/events")
+    @GET
+    @Produces(value = MediaType.SERVER_SENT_EVENTS)
+    public void events(@Context final SseEventSink eventSink, @Context final Sse sse) {
+        synchronized (this) {
+            if (null == broadcaster) {
+                this.sse = sse;
+                broadcaster = sse.newBroadcaster();
+            }
+        }
+
+        broadcaster.register(eventSink);
+
+        final String mediaUrl = snapshot.get().mediaUrl;
+
+        if (!mediaUrl.isEmpty()) {
+            eventSink.send(imageEvent(sse, mediaUrl));
+        }
+    }
+
+    private static OutboundSseEvent imageEvent(final Sse sse, final String mediaUrl) {
+        return sse.newEventBuilder()
+                .name("image")
+                .data(mediaUrl)
+                .build();
+    }
+
+    /**
+     * Serves the registered media with the {@code mediaId} from the local
+     * media cache, downloading it once if necessary. If a viewport is given,
+     * the smallest variant covering it is served instead of the original. As
+     * the content of a media never changes it is served with long-lived cache
+     * headers.
+     *
+     * @param mediaId the id of the media
+     *
+     * @param width the width of the viewport or {@code 0} for the original
+     *
+     * @param height the height of the viewport or {@code 0} for the original
+     *
+     * @param asyncResponse the response to resume with the media
+     */
+    @Path("media/{id}")
+    @GET
+    public void media(@PathParam("id") final long mediaId,
+            @QueryParam("width") @DefaultValue("0") final int width,
+            @QueryParam("height") @DefaultValue("0") final int height,
+            @Suspended final AsyncResponse asyncResponse) {
+        mediaCache.fetch(mediaId, width, height).whenComplete((media, ex) -> {
+            if (null != ex) {
+                LOGGER.error("Error fetching media " + mediaId, ex);
+                asyncResponse.resume(Response.status(Response.Status.BAD_GATEWAY).build());
+            } else if (null == media) {
+                asyncResponse.resume(Response.status(Response.Status.NOT_FOUND).build());
+            } else {
+                asyncResponse.resume(mediaResponse(mediaId, media));
+            }
+        });
+    }
+
+    private Response mediaResponse(final long mediaId, final MediaCache.CachedMedia media) {
+        final java.nio.file.Path file = media.getFile();
+        final long size;
+
+        try {
+            size = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).size();
+        } catch (IOException ex) {
+            // evicted after being fetched
+            LOGGER.warn("Error opening media " + mediaId, ex);
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+        }
+
+        // opened only once written, as HEAD requests and aborted requests never write the entity
+        final StreamingOutput entity = output -> {
+            try (final FileChannel in = FileChannel.open(file, StandardOpenOption.READ, LinkOption.NOFOLLOW_LINKS)) {
+                final WritableByteChannel out = Channels.newChannel(output);
+                long position = 0;
+
+                while (position < size) {
+                    final long transferred = in.transferTo(position, size - position, out);
+
+                    if (transferred <= 0) {
+                        throw new EOFException("Media " + mediaId + " truncated at " + position + " of " + size + " bytes");
+                    }
+
+                    position += transferred;
+                }
+            }
+        };
+        final CacheControl cacheControl = new CacheControl();
+        cacheControl.setMaxAge(MEDIA_MAX_AGE);
+        cacheControl.getCacheExtension().put("immutable", null);
+        final String contentType = media.getContentType();
+
+        return Response.ok(entity, null == contentType ? MediaType.APPLICATION_OCTET_STREAM : contentType)
+                .header(HttpHeaders.CONTENT_LENGTH, size)
+                .tag(media.getDigest())
+                .cacheControl(cacheControl)
+                .build();
+    }
+
+    private void refresh() {
+        try {
+            final String mediaUrl = latestMediaUrl(tweeter.searchIncremental(
+                    new TweetQuery()
+                            .resultType(TweetQuery.ResultType.recent)
+                            .query(settings.getQuery())
+                            .count(settings.getCount())))
+                    // no new picture found: keep showing the current one
+                    .orElse(snapshot.get().mediaUrl);
+
+            if (!mediaUrl.equals(snapshot.get().mediaUrl)) {
+                snapshot.set(new Snapshot(mediaUrl));
+
+                if (null != broadcaster && !mediaUrl.isEmpty()) {
+                    broadcaster.broadcast(imageEvent(sse, mediaUrl));
+                }
+            }
+        } catch (RuntimeException ex) {
+            // keep serving the previous snapshot and retry on the next run
+            LOGGER.error("Error refreshing latest image", ex);
+        } finally {
+            firstRefresh.complete(null);
+        }
+    }
+
+    /**
+     * Shows the latest image among the Tweets recorded before a restart until
+     * a refresh finds a new one, so that a redeployed page is not empty while
+     * waiting for twitter. The image is not checked for being a copy, as that
+     * would download every recorded image again.
+     */
+    private void restore() {
+        try {
+            tweeter.replayJournal()
+                    .flatMap(t -> Arrays.stream(t.getMediaEntries()))
+                    .filter(me -> me.getType() == MediaTweetEntryType.photo)
+                    .findFirst()
+                    .ifPresent(me -> {
+                        mediaCache.register(me);
+                        snapshot.set(new Snapshot("media/" + me.getId()));
+                        firstRefresh.complete(null);
+                    });
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Error restoring latest image from journal", ex);
+        }
+    }
+
+    /**
+     * Returns the URL of the first photo of the {@code tweets} that is not a
+     * copy of a picture seen before, so that re-uploads and retweets of a
+     * picture are never shown again. The Optional is empty if there are no
+     * photos at all or all photos are copies.
+     */
+    private Optional<String> latestMediaUrl(final Stream<Tweet> tweets) {
+        final List<MediaTweetEntry> photos = tweets.flatMap(t -> Arrays.stream(t.getMediaEntries()))
                 .filter(me -> me.getType() == MediaTweetEntryType.photo)
-                .map(me -> me.getMediaUrl())
+                .collect(Collectors.toList());
+
+        // hashed lazily, newest first, until the first original is found
+        return photos.stream()
+                .filter(this::isOriginal)
                 .findFirst()
-                .orElse("");
+                .map(me -> "media/" + me.getId());
+    }
 
+    /**
+     * Returns whether the {@code mediaEntry} is not a copy of a picture seen
+     * before. Media whose hash is not known within a few seconds is skipped
+     * for now; the hash keeps being computed and is known on a later refresh.
+     */
+    private boolean isOriginal(final MediaTweetEntry mediaEntry) {
+        try {
+            return mediaEntry.getId() == mediaDeduplicator.canonicalId(mediaEntry).get(HASH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException ex) {
+            LOGGER.warn("Timed out hashing media {}", mediaEntry.getId());
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException ex) {
+            // never completed exceptionally, failures resolve to the media itself
+            return true;
+        }
+    }
+
+    private static String render(final String mediaUrl) {
         return "<html>"
-                + "<meta http-equiv=\"refresh\" content=\"10\"/>"
                 + "<head>"
                 + "<style>"
                 + "body { \n"
-                + "  background: url(" + mediaUrl + ") no-repeat center center fixed; \n"
+                + "  background: no-repeat center center fixed; \n"
                 + "  -webkit-background-size: cover;\n"
                 + "  -moz-background-size: cover;\n"
                 + "  -o-background-size: cover;\n"
@@ -49,7 +405,57 @@ public class LatestImage {
                 + "}"
                 + "</style>"
                 + "</head>"
-                + "<body></body>"
+                + "<body>"
+                + "<script>\n"
+                + "function show(mediaUrl) {\n"
+                + "  if (mediaUrl) {\n"
+                + "    var ratio = window.devicePixelRatio || 1;\n"
+                + "    document.body.style.backgroundImage = 'url(' + mediaUrl\n"
+                + "        + '?width=' + Math.round(window.innerWidth * ratio)\n"
+                + "        + '&height=' + Math.round(window.innerHeight * ratio) + ')';\n"
+                + "  }\n"
+                + "}\n"
+                + "show('" + mediaUrl + "');\n"
+                + "new EventSource('latest/events').addEventListener('image', function (event) {\n"
+                + "  show(event.data);\n"
+                + "});\n"
+                + "</script>"
+                + "</body>"
                 + "</html>";
     }
+
+    /**
+     * Immutable pre-rendered page for one media URL. The {@code html} bytes
+     * are never modified after construction.
+     */
+    private static final class Snapshot {
+
+        private final String mediaUrl;
+        private final byte[] html;
+        private final EntityTag entityTag;
+        private final Date lastModified;
+
+        private Snapshot(final String mediaUrl) {
+            this.mediaUrl = mediaUrl;
+            this.html = render(mediaUrl).getBytes(StandardCharsets.UTF_8);
+            this.entityTag = new EntityTag(digest(html));
+            // HTTP dates have a precision of seconds
+            this.lastModified = new Date(TimeUnit.SECONDS.toMillis(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis())));
+        }
+
+        private static String digest(final byte[] bytes) {
+            try {
+                final byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+                final StringBuilder sb = new StringBuilder(32);
+
+                for (int i = 0; i < 16; i++) {
+                    sb.append(String.format("%02x", digest[i]));
+                }
+
+                return sb.toString();
+            } catch (NoSuchAlgorithmException ex) {
+                throw new IllegalStateException("SHA-256 not supported", ex);
+            }
+        }
+    }
 }
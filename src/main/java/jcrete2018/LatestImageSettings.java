@@ -0,0 +1,190 @@
+package jcrete2018;
+
+import org.tweetwallfx.config.ConfigurationConverter;
+import static org.tweetwall.util.ToString.*;
+
+/**
+ * POJO for reading Settings concerning the latest image page.
+ */
+public final class LatestImageSettings {
+
+    /**
+     * Configuration key under which the data for this Settings object is stored
+     * in the configuration data map.
+     */
+    public static final String CONFIG_KEY = "latestImage";
+    private String query = "JCreteCharity";
+    private int count = 10;
+    private int pollInterval = 10;
+    private String mediaCacheDirectory = System.getProperty("java.io.tmpdir") + "/jcrete-media";
+    private long mediaCacheMaxBytes = 256L * 1024 * 1024;
+    private int prefetchMaxInFlight = 4;
+    private int duplicateMaxDistance = 6;
+
+    /**
+     * Returns the Query String used to search for the latest images.
+     *
+     * @return the Query String used to search for the latest images
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Sets the Query String used to search for the latest images.
+     *
+     * @param query the Query String used to search for the latest images
+     */
+    public void setQuery(final String query) {
+        this.query = query;
+    }
+
+    /**
+     * Returns the number of Tweets requested per search.
+     *
+     * @return the number of Tweets requested per search
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Sets the number of Tweets requested per search.
+     *
+     * @param count the number of Tweets requested per search
+     */
+    public void setCount(final int count) {
+        this.count = count;
+    }
+
+    /**
+     * Returns the interval in seconds between two searches of the background
+     * refresher.
+     *
+     * @return the interval in seconds between two searches
+     */
+    public int getPollInterval() {
+        return pollInterval;
+    }
+
+    /**
+     * Sets the interval in seconds between two searches of the background
+     * refresher.
+     *
+     * @param pollInterval the interval in seconds between two searches
+     */
+    public void setPollInterval(final int pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * Returns the directory the media served by the application is cached in.
+     * An existing directory has to be owned and only be writable by the user
+     * running the application.
+     *
+     * @return the directory the media is cached in
+     */
+    public String getMediaCacheDirectory() {
+        return mediaCacheDirectory;
+    }
+
+    /**
+     * Sets the directory the media served by the application is cached in.
+     *
+     * @param mediaCacheDirectory the directory the media is cached in
+     */
+    public void setMediaCacheDirectory(final String mediaCacheDirectory) {
+        this.mediaCacheDirectory = mediaCacheDirectory;
+    }
+
+    /**
+     * Returns the maximum number of bytes of cached media.
+     *
+     * @return the maximum number of bytes of cached media
+     */
+    public long getMediaCacheMaxBytes() {
+        return mediaCacheMaxBytes;
+    }
+
+    /**
+     * Sets the maximum number of bytes of cached media.
+     *
+     * @param mediaCacheMaxBytes the maximum number of bytes of cached media
+     */
+    public void setMediaCacheMaxBytes(final long mediaCacheMaxBytes) {
+        this.mediaCacheMaxBytes = mediaCacheMaxBytes;
+    }
+
+    /**
+     * Returns the maximum number of outstanding prefetches of media of
+     * streamed Tweets. A value of {@code 0} disables prefetching.
+     *
+     * @return the maximum number of outstanding prefetches
+     */
+    public int getPrefetchMaxInFlight() {
+        return prefetchMaxInFlight;
+    }
+
+    /**
+     * Sets the maximum number of outstanding prefetches of media of streamed
+     * Tweets. A value of {@code 0} disables prefetching.
+     *
+     * @param prefetchMaxInFlight the maximum number of outstanding prefetches
+     */
+    public void setPrefetchMaxInFlight(final int prefetchMaxInFlight) {
+        this.prefetchMaxInFlight = prefetchMaxInFlight;
+    }
+
+    /**
+     * Returns the maximum number of differing bits of the perceptual hashes of
+     * two images considered to show the same picture. A negative value
+     * disables the suppression of duplicate images.
+     *
+     * @return the maximum number of differing bits of duplicate images
+     */
+    public int getDuplicateMaxDistance() {
+        return duplicateMaxDistance;
+    }
+
+    /**
+     * Sets the maximum number of differing bits of the perceptual hashes of
+     * two images considered to show the same picture. A negative value
+     * disables the suppression of duplicate images.
+     *
+     * @param duplicateMaxDistance the maximum number of differing bits of
+     * duplicate images
+     */
+    public void setDuplicateMaxDistance(final int duplicateMaxDistance) {
+        this.duplicateMaxDistance = duplicateMaxDistance;
+    }
+
+    @Override
+    public String toString() {
+        return createToString(this, mapOf(
+                mapEntry("query", getQuery()),
+                mapEntry("count", getCount()),
+                mapEntry("pollInterval", getPollInterval()),
+                mapEntry("mediaCacheDirectory", getMediaCacheDirectory()),
+                mapEntry("mediaCacheMaxBytes", getMediaCacheMaxBytes()),
+                mapEntry("prefetchMaxInFlight", getPrefetchMaxInFlight()),
+                mapEntry("duplicateMaxDistance", getDuplicateMaxDistance())
+        )) + " extends " + super.toString();
+    }
+
+    /**
+     * Service implementation converting the configuration data of the root key
+     * {@link LatestImageSettings#CONFIG_KEY} into {@link LatestImageSettings}.
+     */
+    public static class Converter implements ConfigurationConverter {
+
+        @Override
+        public String getResponsibleKey() {
+            return LatestImageSettings.CONFIG_KEY;
+        }
+
+        @Override
+        public Class<?> getDataClass() {
+            return LatestImageSettings.class;
+        }
+    }
+}
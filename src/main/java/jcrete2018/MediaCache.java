@@ -0,0 +1,604 @@
+package jcrete2018;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.tweetwallfx.tweet.api.entry.MediaTweetEntry;
+import static org.tweetwall.util.ToString.*;
+
+/**
+ * Content addressed on-disk cache of media downloaded from twitter and of
+ * variants of the media resized locally.
+ * <p>
+ * Media has to be {@link #register(MediaTweetEntry) registered} before it can
+ * be fetched, so that only media seen by this application is downloaded. Each
+ * media is downloaded once and stored in a file named after the SHA-256 of its
+ * content, so identical content is stored only once. When the total size of
+ * the stored files exceeds the maximum, the least recently used files are
+ * deleted.
+ * <p>
+ * Requests for a specific viewport are served from the smallest size
+ * variation of twitter covering the viewport. If that variation is still
+ * considerably larger than the viewport, it is resized and re-encoded locally
+ * on the resize executor.
+ * <p>
+ * As the stored files are served as they are, the directory is created
+ * accessible by its owner only where the file system supports POSIX
+ * permissions, and an existing directory is refused if it is not owned by the
+ * current user or writable by others.
+ */
+public final class MediaCache {
+
+    private static final Logger LOGGER = LogManager.getLogger(MediaCache.class);
+    private static final String JPEG = "image/jpeg";
+    private static final float JPEG_QUALITY = 0.85f;
+    /**
+     * Size variations exceeding the viewport by less than this factor are
+     * served without resizing them locally.
+     */
+    private static final double RESIZE_THRESHOLD = 1.25;
+    /**
+     * Viewport dimensions are rounded up to one of these, bounding the number
+     * of locally resized variants per media no matter which viewports are
+     * requested.
+     */
+    private static final int[] VIEWPORT_BUCKETS = {320, 480, 640, 800, 1024, 1280, 1600, 1920, 2560, 3840};
+    private static final int MAX_MEDIA_ENTRIES = 10_000;
+    private static final int MAX_REQUESTED_VIEWPORTS = 4;
+    private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+    private static final int READ_TIMEOUT_MILLIS = 30_000;
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    private final Path directory;
+    private final long maxBytes;
+    private final Executor downloadExecutor;
+    private final Executor resizeExecutor;
+    /**
+     * The registered media, forgetting the least recently registered or
+     * fetched ones first.
+     */
+    private final Map<Long, MediaTweetEntry> mediaEntries = Collections.synchronizedMap(new LinkedHashMap<Long, MediaTweetEntry>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Long, MediaTweetEntry> eldest) {
+            return size() > MAX_MEDIA_ENTRIES;
+        }
+    });
+    /**
+     * Bucketed viewports most recently requested, each packed as width in the
+     * upper and height in the lower 32 bits.
+     */
+    private final Map<Long, Boolean> requestedViewports = Collections.synchronizedMap(new LinkedHashMap<Long, Boolean>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Long, Boolean> eldest) {
+            return size() > MAX_REQUESTED_VIEWPORTS;
+        }
+    });
+    private final Map<String, CachedMedia> variants = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<CachedMedia>> pending = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    /**
+     * Creates a cache storing its files in {@code directory}. Files left in
+     * the directory by a previous run are accounted for and evicted first.
+     *
+     * @param directory the directory to store the files in
+     *
+     * @param maxBytes the maximum total size of the stored files
+     *
+     * @param downloadExecutor the executor downloads run on
+     *
+     * @param resizeExecutor the executor local resizing runs on
+     *
+     * @throws UncheckedIOException if the directory cannot be prepared
+     */
+    public MediaCache(final Path directory, final long maxBytes, final Executor downloadExecutor, final Executor resizeExecutor) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.downloadExecutor = downloadExecutor;
+        this.resizeExecutor = resizeExecutor;
+
+        try {
+            prepareDirectory(directory);
+
+            try (final Stream<Path> existing = Files.list(directory)) {
+                existing.filter(file -> Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)).forEach(file -> {
+                    try {
+                        final long size = Files.size(file);
+                        files.put(file.getFileName().toString(), size);
+                        totalBytes += size;
+                    } catch (IOException ex) {
+                        LOGGER.warn("Ignoring unreadable cache file " + file, ex);
+                    }
+                });
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to prepare media cache directory " + directory, ex);
+        }
+    }
+
+    /**
+     * Creates the {@code directory} accessible by its owner only or verifies
+     * that an existing one cannot be written by anybody but the current user.
+     */
+    private static void prepareDirectory(final Path directory) throws IOException {
+        if (!POSIX) {
+            Files.createDirectories(directory);
+            return;
+        }
+
+        if (Files.notExists(directory, LinkOption.NOFOLLOW_LINKS)) {
+            Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        }
+
+        final UserPrincipal currentUser = directory.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        final Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(directory, LinkOption.NOFOLLOW_LINKS);
+
+        if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)
+                || !currentUser.equals(Files.getOwner(directory, LinkOption.NOFOLLOW_LINKS))
+                || permissions.contains(PosixFilePermission.GROUP_WRITE)
+                || permissions.contains(PosixFilePermission.OTHERS_WRITE)) {
+            throw new IOException("Media cache directory " + directory + " must be owned and only be writable by " + currentUser.getName());
+        }
+    }
+
+    /**
+     * Registers the media so that it can be fetched by its id. Only the most
+     * recently registered or fetched media are kept registered.
+     *
+     * @param mediaTweetEntry the media to register
+     */
+    public void register(final MediaTweetEntry mediaTweetEntry) {
+        mediaEntries.put(mediaTweetEntry.getId(), mediaTweetEntry);
+    }
+
+    /**
+     * Returns the original of the registered media with the {@code mediaId},
+     * downloading it first if it is not stored. Concurrent fetches of the same
+     * media share one download.
+     *
+     * @param mediaId the id of the media
+     *
+     * @return the future completed with the media or with {@code null} if no
+     * such media is registered
+     */
+    public CompletableFuture<CachedMedia> fetch(final long mediaId) {
+        final MediaTweetEntry mediaEntry = mediaEntries.get(mediaId);
+
+        if (null == mediaEntry) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final String mediaUrl = mediaEntry.getMediaUrl();
+
+        return fetch(String.valueOf(mediaId), downloadExecutor,
+                () -> openStream(mediaUrl),
+                URLConnection.guessContentTypeFromName(mediaUrl));
+    }
+
+    /**
+     * Returns a variant of the registered media with the {@code mediaId}
+     * covering a viewport of {@code width} x {@code height} pixels, creating
+     * it first if it is not stored. The original is returned if either
+     * dimension is not positive. Both dimensions are rounded up to one of a
+     * few fixed sizes first, so that only a bounded number of variants is
+     * created per media.
+     *
+     * @param mediaId the id of the media
+     *
+     * @param width the width of the viewport
+     *
+     * @param height the height of the viewport
+     *
+     * @return the future completed with the media or with {@code null} if no
+     * such media is registered
+     */
+    public CompletableFuture<CachedMedia> fetch(final long mediaId, final int width, final int height) {
+        final MediaTweetEntry mediaEntry = mediaEntries.get(mediaId);
+
+        if (width <= 0 || height <= 0 || null == mediaEntry) {
+            return fetch(mediaId);
+        }
+
+        final int bucketWidth = toBucket(width);
+        final int bucketHeight = toBucket(height);
+        requestedViewports.put(((long) bucketWidth << 32) | bucketHeight, Boolean.TRUE);
+        return fetch(mediaEntry, bucketWidth, bucketHeight);
+    }
+
+    /**
+     * Returns the variant of the {@code mediaEntry} covering the bucketed
+     * viewport of {@code bucketWidth} x {@code bucketHeight} pixels.
+     */
+    private CompletableFuture<CachedMedia> fetch(final MediaTweetEntry mediaEntry, final int bucketWidth, final int bucketHeight) {
+        final long mediaId = mediaEntry.getId();
+        final Integer size = mediaEntry.getSmallestSizeCovering(bucketWidth, bucketHeight);
+
+        if (null == size) {
+            return fetch(mediaId);
+        }
+
+        final MediaTweetEntry.Size sizeVariation = mediaEntry.getSizes().get(size);
+        final CompletableFuture<CachedMedia> sized = fetch(mediaEntry, size);
+
+        if (sizeVariation.getWidth() <= bucketWidth * RESIZE_THRESHOLD || sizeVariation.getHeight() <= bucketHeight * RESIZE_THRESHOLD) {
+            return sized;
+        }
+
+        return sized.thenCompose(source -> fetch(mediaId + ":" + bucketWidth + "x" + bucketHeight, resizeExecutor,
+                () -> new ByteArrayInputStream(resize(source.getFile(), bucketWidth, bucketHeight)),
+                JPEG));
+    }
+
+    /**
+     * Returns the size variation {@code size} of the {@code mediaEntry} as
+     * downloaded from twitter.
+     */
+    private CompletableFuture<CachedMedia> fetch(final MediaTweetEntry mediaEntry, final Integer size) {
+        final String sizeUrl = mediaEntry.getMediaUrl(size);
+
+        return fetch(mediaEntry.getId() + ":" + size, downloadExecutor,
+                () -> openStream(sizeUrl),
+                URLConnection.guessContentTypeFromName(mediaEntry.getMediaUrl()));
+    }
+
+    /**
+     * Returns the small size variation of the registered media with the
+     * {@code mediaId}, downloading it first if it is not stored. The original
+     * is returned if there is no small size variation.
+     *
+     * @param mediaId the id of the media
+     *
+     * @return the future completed with the media or with {@code null} if no
+     * such media is registered
+     */
+    public CompletableFuture<CachedMedia> fetchSmall(final long mediaId) {
+        final MediaTweetEntry mediaEntry = mediaEntries.get(mediaId);
+
+        if (null == mediaEntry || !mediaEntry.getSizes().containsKey(MediaTweetEntry.Size.SMALL)) {
+            return fetch(mediaId);
+        }
+
+        return fetch(mediaEntry, MediaTweetEntry.Size.SMALL);
+    }
+
+    /**
+     * Stores the variants of the registered media with the {@code mediaId}
+     * that requests are going to be served from: the variants for the
+     * viewports requested most recently or, if no viewport has been requested
+     * yet, the largest size variation.
+     *
+     * @param mediaId the id of the media
+     *
+     * @return the future completed once all variants are stored
+     */
+    public CompletableFuture<Void> prefetch(final long mediaId) {
+        final MediaTweetEntry mediaEntry = mediaEntries.get(mediaId);
+
+        if (null == mediaEntry) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final List<Long> viewports;
+
+        synchronized (requestedViewports) {
+            viewports = new ArrayList<>(requestedViewports.keySet());
+        }
+
+        if (viewports.isEmpty()) {
+            // the largest viewport is covered by the largest size variation at best
+            final int largest = VIEWPORT_BUCKETS[VIEWPORT_BUCKETS.length - 1];
+            return fetch(mediaEntry, largest, largest).thenApply(media -> null);
+        }
+
+        return CompletableFuture.allOf(viewports.stream()
+                .map(viewport -> fetch(mediaEntry, (int) (viewport >>> 32), (int) (long) viewport))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Opens the content at the {@code url}, so that a stalled connection
+     * fails the download instead of blocking a download thread forever.
+     */
+    private static InputStream openStream(final String url) throws IOException {
+        final URLConnection connection = new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        return connection.getInputStream();
+    }
+
+    /**
+     * Rounds the viewport dimension up to the next bucket, or down to the
+     * largest bucket if it exceeds all of them.
+     */
+    private static int toBucket(final int dimension) {
+        for (final int bucket : VIEWPORT_BUCKETS) {
+            if (dimension <= bucket) {
+                return bucket;
+            }
+        }
+
+        return VIEWPORT_BUCKETS[VIEWPORT_BUCKETS.length - 1];
+    }
+
+    /**
+     * Returns the stored variant with the {@code key} or creates and stores
+     * it by reading the content from {@code content} on the
+     * {@code executor}. Concurrent fetches of the same variant share one
+     * creation.
+     */
+    private CompletableFuture<CachedMedia> fetch(final String key, final Executor executor, final ContentSupplier content, final String contentType) {
+        final CachedMedia cached = lookup(key);
+
+        if (null != cached) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        final CompletableFuture<CachedMedia> creation = pending.computeIfAbsent(key,
+                k -> CompletableFuture.supplyAsync(() -> store(k, content, contentType), executor));
+
+        // attached outside of computeIfAbsent, as the creation may already be complete
+        creation.whenComplete((media, ex) -> pending.remove(key, creation));
+        return creation;
+    }
+
+    /**
+     * Returns the stored variant with the {@code key} and marks its file as
+     * recently used.
+     */
+    private CachedMedia lookup(final String key) {
+        final CachedMedia cached = variants.get(key);
+
+        if (null == cached) {
+            return null;
+        }
+
+        synchronized (files) {
+            if (null != files.get(cached.digest)) {
+                return cached;
+            }
+        }
+
+        // evicted in the meantime
+        variants.remove(key, cached);
+        return null;
+    }
+
+    private CachedMedia store(final String key, final ContentSupplier content, final String contentType) {
+        try {
+            final MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            final Path temporary = Files.createTempFile(directory, "download-", ".tmp");
+
+            try {
+                try (final InputStream in = new DigestInputStream(content.open(), messageDigest);
+                        final OutputStream out = Files.newOutputStream(temporary)) {
+                    final byte[] buffer = new byte[16384];
+                    int read;
+
+                    while ((read = in.read(buffer)) >= 0) {
+                        out.write(buffer, 0, read);
+                    }
+                }
+
+                final String digest = toHex(messageDigest.digest());
+                final Path file = directory.resolve(digest);
+                final long size = Files.size(temporary);
+
+                synchronized (files) {
+                    if (null == files.get(digest)) {
+                        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                        files.put(digest, size);
+                        totalBytes += size;
+                        evict(digest);
+                    }
+                }
+
+                final CachedMedia media = new CachedMedia(file, digest, contentType);
+                variants.put(key, media);
+                LOGGER.debug("Cached media {} as {}", key, digest);
+                return media;
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to cache media " + key, ex);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 not supported", ex);
+        }
+    }
+
+    /**
+     * Deletes the least recently used files until the total size is within
+     * the maximum, keeping the file with the {@code retainedDigest}.
+     */
+    private void evict(final String retainedDigest) {
+        final Iterator<Map.Entry<String, Long>> iterator = files.entrySet().iterator();
+
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            final Map.Entry<String, Long> entry = iterator.next();
+
+            if (entry.getKey().equals(retainedDigest)) {
+                continue;
+            }
+
+            try {
+                Files.deleteIfExists(directory.resolve(entry.getKey()));
+            } catch (NoSuchFileException ex) {
+                // already gone
+            } catch (IOException ex) {
+                LOGGER.warn("Failed to delete cached media " + entry.getKey(), ex);
+                continue;
+            }
+
+            totalBytes -= entry.getValue();
+            iterator.remove();
+            variants.values().removeIf(media -> media.digest.equals(entry.getKey()));
+        }
+    }
+
+    /**
+     * Scales the image in {@code file} down so that it just covers
+     * {@code width} x {@code height} pixels and encodes it as JPEG.
+     */
+    private static byte[] resize(final Path file, final int width, final int height) throws IOException {
+        final BufferedImage source = ImageIO.read(file.toFile());
+
+        if (null == source) {
+            throw new IOException("Unsupported image format: " + file);
+        }
+
+        final double scale = Math.min(1, Math.max((double) width / source.getWidth(), (double) height / source.getHeight()));
+        BufferedImage image = source;
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        // halve step by step, as bilinear interpolation over larger factors loses detail
+        do {
+            final int stepWidth = Math.max(targetWidth, image.getWidth() / 2);
+            final int stepHeight = Math.max(targetHeight, image.getHeight() / 2);
+            final BufferedImage step = new BufferedImage(stepWidth, stepHeight, BufferedImage.TYPE_INT_RGB);
+            final Graphics2D graphics = step.createGraphics();
+
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(image, 0, 0, stepWidth, stepHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+
+            image = step;
+        } while (image.getWidth() > targetWidth || image.getHeight() > targetHeight);
+
+        final ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (final ImageOutputStream imageOut = ImageIO.createImageOutputStream(out)) {
+            final ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(imageOut);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+
+        return out.toByteArray();
+    }
+
+    private static String toHex(final byte[] bytes) {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+
+        for (final byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        synchronized (files) {
+            return createToString(this, map(
+                    "directory", directory.toString(),
+                    "maxBytes", maxBytes,
+                    "totalBytes", totalBytes,
+                    "files", files.size()
+            ));
+        }
+    }
+
+    /**
+     * Opens the content of a variant.
+     */
+    @FunctionalInterface
+    private interface ContentSupplier {
+
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * A stored media variant.
+     */
+    public static final class CachedMedia {
+
+        private final Path file;
+        private final String digest;
+        private final String contentType;
+
+        private CachedMedia(final Path file, final String digest, final String contentType) {
+            this.file = file;
+            this.digest = digest;
+            this.contentType = contentType;
+        }
+
+        /**
+         * Returns the file holding the content.
+         *
+         * @return the file holding the content
+         */
+        public Path getFile() {
+            return file;
+        }
+
+        /**
+         * Returns the SHA-256 of the content.
+         *
+         * @return the SHA-256 of the content
+         */
+        public String getDigest() {
+            return digest;
+        }
+
+        /**
+         * Returns the content type or {@code null} if it is unknown.
+         *
+         * @return the content type
+         */
+        public String getContentType() {
+            return contentType;
+        }
+    }
+}
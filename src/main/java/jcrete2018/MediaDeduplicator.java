@@ -0,0 +1,214 @@
+package jcrete2018;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.tweetwallfx.tweet.api.entry.MediaTweetEntry;
+import static org.tweetwall.util.ToString.*;
+
+/**
+ * Resolves media to the first media seen showing the same picture, so that
+ * re-uploads of a picture can be recognized as such.
+ * <p>
+ * The picture of a media is identified by the difference hash (dHash) of its
+ * small size variation: the image is reduced to 9 x 8 gray values and each bit
+ * of the 64 bit hash tells whether a gray value is brighter than its right
+ * neighbour. Re-encoded, rescaled or slightly altered copies of a picture end
+ * up with hashes only a few bits apart, so the few hundred pixels of the small
+ * size variation are as good as the original and much cheaper to download.
+ * The hash is computed once per media from the file in the {@link MediaCache}
+ * and looked up in a {@link HammingIndex} of the hashes of all media seen
+ * before.
+ */
+public final class MediaDeduplicator {
+
+    private static final Logger LOGGER = LogManager.getLogger(MediaDeduplicator.class);
+    private static final int HASH_WIDTH = 9;
+    private static final int HASH_HEIGHT = 8;
+    /**
+     * Images are decoded subsampled down to about this size, which is plenty
+     * for a 9 x 8 hash.
+     */
+    private static final int DECODE_SIZE = 256;
+    private static final int MAX_CANONICAL_IDS = 10_000;
+
+    private final MediaCache mediaCache;
+    private final Executor hashExecutor;
+    private final int maxDistance;
+    private final HammingIndex index = new HammingIndex();
+    /**
+     * Canonical ids of the most recently resolved media. Media resolved again
+     * after being forgotten still resolves to the same id, as its hash is
+     * kept in the index.
+     */
+    private final Map<Long, CompletableFuture<Long>> canonicalIds = Collections.synchronizedMap(new LinkedHashMap<Long, CompletableFuture<Long>>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Long, CompletableFuture<Long>> eldest) {
+            return size() > MAX_CANONICAL_IDS;
+        }
+    });
+
+    /**
+     * Creates a deduplicator for media stored in {@code mediaCache}.
+     *
+     * @param mediaCache the cache to read the media from
+     *
+     * @param hashExecutor the executor hashes are computed on
+     *
+     * @param maxDistance the maximum number of differing hash bits of media
+     * considered to show the same picture, or a negative value to treat all
+     * media as distinct
+     */
+    public MediaDeduplicator(final MediaCache mediaCache, final Executor hashExecutor, final int maxDistance) {
+        this.mediaCache = mediaCache;
+        this.hashExecutor = hashExecutor;
+        this.maxDistance = maxDistance;
+    }
+
+    /**
+     * Returns the id of the first media seen showing the same picture as
+     * {@code mediaTweetEntry}. The media is registered with the cache on every
+     * call and its small size variation fetched once. Media that cannot be read or
+     * decoded resolves to its own id.
+     *
+     * @param mediaTweetEntry the media to resolve
+     *
+     * @return the future completed with the id of the first media showing the
+     * same picture
+     */
+    public CompletableFuture<Long> canonicalId(final MediaTweetEntry mediaTweetEntry) {
+        final long mediaId = mediaTweetEntry.getId();
+        // registered on every call, so that media still being shown stays registered
+        mediaCache.register(mediaTweetEntry);
+
+        if (maxDistance < 0) {
+            return CompletableFuture.completedFuture(mediaId);
+        }
+
+        return canonicalIds.computeIfAbsent(mediaId, id -> mediaCache.fetchSmall(id)
+                .thenApplyAsync(media -> null == media ? id : resolve(id, media.getFile()), hashExecutor)
+                .exceptionally(ex -> {
+                    LOGGER.warn("Failed to hash media " + id, ex);
+                    return id;
+                }));
+    }
+
+    private long resolve(final long mediaId, final Path file) {
+        final long hash;
+
+        try {
+            hash = dHash(file);
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to hash media " + mediaId, ex);
+            return mediaId;
+        }
+
+        // look up and add atomically, so that concurrent copies agree on one original
+        synchronized (index) {
+            final OptionalLong nearest = index.findNearest(hash, maxDistance);
+
+            if (nearest.isPresent()) {
+                LOGGER.debug("Media {} is a copy of media {}", mediaId, nearest.getAsLong());
+                return nearest.getAsLong();
+            }
+
+            index.add(hash, mediaId);
+            return mediaId;
+        }
+    }
+
+    /**
+     * Computes the difference hash of the image in {@code file}.
+     */
+    private static long dHash(final Path file) throws IOException {
+        final BufferedImage image = decodeSubsampled(file);
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final double[] gray = new double[HASH_WIDTH * HASH_HEIGHT];
+
+        // average the luminance of the block of pixels covered by each cell
+        for (int cellY = 0; cellY < HASH_HEIGHT; cellY++) {
+            final int y0 = cellY * height / HASH_HEIGHT;
+            final int y1 = Math.max(y0 + 1, (cellY + 1) * height / HASH_HEIGHT);
+
+            for (int cellX = 0; cellX < HASH_WIDTH; cellX++) {
+                final int x0 = cellX * width / HASH_WIDTH;
+                final int x1 = Math.max(x0 + 1, (cellX + 1) * width / HASH_WIDTH);
+                double sum = 0;
+
+                for (int y = y0; y < Math.min(y1, height); y++) {
+                    for (int x = x0; x < Math.min(x1, width); x++) {
+                        final int rgb = image.getRGB(x, y);
+                        sum += 0.299 * ((rgb >> 16) & 0xff) + 0.587 * ((rgb >> 8) & 0xff) + 0.114 * (rgb & 0xff);
+                    }
+                }
+
+                gray[cellY * HASH_WIDTH + cellX] = sum / ((Math.min(y1, height) - y0) * (Math.min(x1, width) - x0));
+            }
+        }
+
+        long hash = 0;
+
+        for (int cellY = 0; cellY < HASH_HEIGHT; cellY++) {
+            for (int cellX = 0; cellX < HASH_WIDTH - 1; cellX++) {
+                hash <<= 1;
+
+                if (gray[cellY * HASH_WIDTH + cellX] > gray[cellY * HASH_WIDTH + cellX + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+
+        return hash;
+    }
+
+    /**
+     * Decodes the image in {@code file}, reading only every n-th pixel of
+     * large images.
+     */
+    private static BufferedImage decodeSubsampled(final Path file) throws IOException {
+        try (final ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            final Iterator<ImageReader> readers = null == in ? null : ImageIO.getImageReaders(in);
+
+            if (null == readers || !readers.hasNext()) {
+                throw new IOException("Unsupported image format: " + file);
+            }
+
+            final ImageReader reader = readers.next();
+
+            try {
+                reader.setInput(in, true, true);
+                final int subsampling = Math.max(1, Math.min(reader.getWidth(0), reader.getHeight(0)) / DECODE_SIZE);
+                final ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return createToString(this, map(
+                "maxDistance", maxDistance,
+                "media", canonicalIds.size(),
+                "index", index
+        ));
+    }
+}
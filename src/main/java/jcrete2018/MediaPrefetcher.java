@@ -0,0 +1,146 @@
+package jcrete2018;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.tweetwallfx.tweet.api.Tweet;
+import org.tweetwallfx.tweet.api.entry.MediaTweetEntry;
+import org.tweetwallfx.tweet.api.entry.MediaTweetEntryType;
+import static org.tweetwall.util.ToString.*;
+
+/**
+ * Consumer of streamed Tweets downloading their photos into the
+ * {@link MediaCache} before any page asks for them. The variants stored are
+ * the ones pages are going to be served, see
+ * {@link MediaCache#prefetch(long)}, and the one the {@link MediaDeduplicator}
+ * hashes, whose canonical id is resolved right away.
+ * <p>
+ * Each media id is prefetched once; the ids are remembered up to a maximum
+ * number, forgetting the least recently seen ones first. At most
+ * {@code maxInFlight} downloads are outstanding at any time. Once that many
+ * are, {@link #accept(Tweet)} waits for one of them to finish, pushing back on
+ * the stream delivering the Tweets. The downloads themselves run on the
+ * download executor of the cache.
+ */
+public final class MediaPrefetcher implements Consumer<Tweet> {
+
+    private static final Logger LOGGER = LogManager.getLogger(MediaPrefetcher.class);
+
+    private final MediaCache mediaCache;
+    private final MediaDeduplicator mediaDeduplicator;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final Map<Long, Boolean> seen;
+    private final AtomicLong prefetched = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * Creates a prefetcher warming {@code mediaCache}.
+     *
+     * @param mediaCache the cache to download the media into
+     *
+     * @param mediaDeduplicator the deduplicator to resolve the media with
+     *
+     * @param maxInFlight the maximum number of outstanding downloads
+     *
+     * @param maxSeen the maximum number of media ids remembered as prefetched
+     */
+    public MediaPrefetcher(final MediaCache mediaCache, final MediaDeduplicator mediaDeduplicator, final int maxInFlight, final int maxSeen) {
+        this.mediaCache = mediaCache;
+        this.mediaDeduplicator = mediaDeduplicator;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.inFlight = new Semaphore(this.maxInFlight);
+        this.seen = new LinkedHashMap<Long, Boolean>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, Boolean> eldest) {
+                return size() > maxSeen;
+            }
+        };
+    }
+
+    @Override
+    public void accept(final Tweet tweet) {
+        Arrays.stream(tweet.getMediaEntries())
+                .filter(me -> me.getType() == MediaTweetEntryType.photo)
+                .filter(me -> markSeen(me.getId()))
+                .forEach(this::prefetch);
+    }
+
+    private void prefetch(final MediaTweetEntry mediaEntry) {
+        final long mediaId = mediaEntry.getId();
+
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            forget(mediaId);
+            return;
+        }
+
+        mediaCache.register(mediaEntry);
+        CompletableFuture.allOf(
+                mediaCache.prefetch(mediaId),
+                mediaDeduplicator.canonicalId(mediaEntry)
+        ).whenComplete((ignored, ex) -> {
+            inFlight.release();
+
+            if (null == ex) {
+                prefetched.incrementAndGet();
+            } else {
+                // a later Tweet or page request may still succeed
+                failed.incrementAndGet();
+                forget(mediaId);
+                LOGGER.warn("Failed to prefetch media " + mediaId, ex);
+            }
+        });
+    }
+
+    private boolean markSeen(final long mediaId) {
+        synchronized (seen) {
+            return null == seen.put(mediaId, Boolean.TRUE);
+        }
+    }
+
+    private void forget(final long mediaId) {
+        synchronized (seen) {
+            seen.remove(mediaId);
+        }
+    }
+
+    /**
+     * Returns the number of media downloaded into or already found in the
+     * cache.
+     *
+     * @return the number of media prefetched
+     */
+    public long getPrefetchedCount() {
+        return prefetched.get();
+    }
+
+    /**
+     * Returns the number of media that failed to download.
+     *
+     * @return the number of failed prefetches
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    @Override
+    public String toString() {
+        return createToString(this, map(
+                "maxInFlight", maxInFlight,
+                "inFlight", maxInFlight - inFlight.availablePermits(),
+                "prefetched", getPrefetchedCount(),
+                "failed", getFailedCount()
+        ));
+    }
+}
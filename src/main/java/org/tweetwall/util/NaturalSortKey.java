@@ -0,0 +1,232 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 TweetWallFX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tweetwall.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Objects;
+
+/**
+ * Precomputed sort key of a String ordering the way
+ * {@link StringNumberComparator} does.
+ * <p>
+ * The String is split into its parts once and encoded into a byte array so
+ * that comparing two keys is a plain unsigned lexicographic comparison of
+ * their bytes. Sorting large collections via their keys avoids reparsing the
+ * Strings on each of the {@code O(n log n)} comparisons.
+ * <p>
+ * The key order is a total order and matches {@link StringNumberComparator}
+ * with two exceptions where the comparator itself is not transitive:
+ * <ul>
+ * <li>If the parts of both Strings are equal until one of them has no more
+ * parts the String with fewer parts sorts first. The comparator compares the
+ * String lengths instead, which only differs when numbers with leading zeros
+ * are involved.</li>
+ * <li>Numbers sort against non-digit parts as if they started with an ASCII
+ * digit, also when they are written in the digits of another script.</li>
+ * </ul>
+ */
+public final class NaturalSortKey implements Comparable<NaturalSortKey> {
+
+    private static final int END = 0x00;
+    private static final int NUMBER = '0' + 1;
+    private final String string;
+    private final byte[] key;
+
+    private NaturalSortKey(final String string, final byte[] key) {
+        this.string = string;
+        this.key = key;
+    }
+
+    /**
+     * Creates the sort key of the provided {@code string}.
+     *
+     * @param string the String to create the key for
+     *
+     * @return the created key
+     */
+    public static NaturalSortKey of(final String string) {
+        Objects.requireNonNull(string, "string must not be null!");
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(string.length() + 8);
+        int index = 0;
+
+        while (index < string.length()) {
+            final boolean isDigit = Character.isDigit(string.charAt(index));
+            int end = index + 1;
+
+            while (end < string.length() && isDigit == Character.isDigit(string.charAt(end))) {
+                end++;
+            }
+
+            if (isDigit) {
+                writeNumber(out, string, index, end);
+            } else {
+                writeText(out, string, index, end);
+            }
+
+            index = end;
+        }
+
+        out.write(END);
+        writeInt(out, string.length());
+
+        return new NaturalSortKey(string, out.toByteArray());
+    }
+
+    /**
+     * Sorts the provided list the way {@link StringNumberComparator} would by
+     * creating the sort key of each element once.
+     *
+     * @param list the list to sort
+     */
+    public static void sort(final List<String> list) {
+        final NaturalSortKey[] keys = list.stream()
+                .map(NaturalSortKey::of)
+                .toArray(NaturalSortKey[]::new);
+
+        Arrays.sort(keys);
+
+        final ListIterator<String> iterator = list.listIterator();
+
+        for (final NaturalSortKey key : keys) {
+            iterator.next();
+            iterator.set(key.string);
+        }
+    }
+
+    /**
+     * Text parts are written char by char in an order preserving variable
+     * length encoding that never starts with {@link #END} and are terminated
+     * by {@link #END}, so that a shorter text sorts before any text it is a
+     * prefix of.
+     */
+    private static void writeText(final ByteArrayOutputStream out, final String string, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            final int c = string.charAt(i);
+
+            if (c < 0x7f) {
+                out.write(c + 1);
+            } else if (c < 0x7f + 0x4000) {
+                out.write(0x80 | ((c - 0x7f) >>> 8));
+                out.write((c - 0x7f) & 0xff);
+            } else {
+                out.write(0xc0);
+                out.write(c >>> 8);
+                out.write(c & 0xff);
+            }
+        }
+
+        out.write(END);
+    }
+
+    /**
+     * Number parts are written as {@link #NUMBER} - the encoding of
+     * {@code '0'} as text - followed by the count of significant digits and
+     * the digit values.
+     */
+    private static void writeNumber(final ByteArrayOutputStream out, final String string, int start, final int end) {
+        while (start < end && 0 == Character.digit(string.charAt(start), 10)) {
+            start++;
+        }
+
+        final int digits = end - start;
+
+        out.write(NUMBER);
+
+        if (digits < 0xff) {
+            out.write(digits);
+        } else {
+            out.write(0xff);
+            writeInt(out, digits);
+        }
+
+        for (int i = start; i < end; i++) {
+            out.write(Character.digit(string.charAt(i), 10));
+        }
+    }
+
+    private static void writeInt(final ByteArrayOutputStream out, final int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /**
+     * Returns the String this key was created for.
+     *
+     * @return the String this key was created for
+     */
+    public String getString() {
+        return string;
+    }
+
+    /**
+     * Returns a copy of the bytes of this key. Comparing the bytes of two keys
+     * as unsigned values in lexicographic order - e.g. in a radix sort - is
+     * equivalent to {@link #compareTo(NaturalSortKey)}.
+     *
+     * @return the bytes of this key
+     */
+    public byte[] toByteArray() {
+        return key.clone();
+    }
+
+    @Override
+    public int compareTo(final NaturalSortKey other) {
+        final int length = Math.min(key.length, other.key.length);
+
+        for (int i = 0; i < length; i++) {
+            if (key[i] != other.key[i]) {
+                return (key[i] & 0xff) - (other.key[i] & 0xff);
+            }
+        }
+
+        return key.length - other.key.length;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+
+        return Arrays.equals(key, ((NaturalSortKey) obj).key);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(key);
+    }
+
+    @Override
+    public String toString() {
+        return ToString.createToString(this, ToString.map(
+                "string", string));
+    }
+}
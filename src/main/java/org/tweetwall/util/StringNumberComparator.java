@@ -23,10 +23,7 @@
  */
 package org.tweetwall.util;
 
-import java.math.BigDecimal;
-import java.math.BigInteger;
 import java.util.Comparator;
-import java.util.Iterator;
 
 /**
  * String Comparator comparing the string based on its parts.
@@ -37,7 +34,8 @@ import java.util.Iterator;
  * other than a digit.
  * <p>
  * If both parts in a parts pair contain numbers their number values are
- * compared - by virtue of {@link BigDecimal#compareTo(java.math.BigDecimal)}.
+ * compared - digit by digit and without parsing the parts into numbers, so
+ * that comparisons do not allocate.
  * Otherwise a regular string comparison is performed. If a parts comparison
  * evaluates to zero then the next pair of parts is evaluated until either side
  * no longer has any parts to compare.
@@ -57,61 +55,104 @@ public final class StringNumberComparator implements Comparator<String> {
 
     @Override
     public int compare(final String string1, final String string2) {
-        final Iterator<String> iterator1 = new StringNumberPartIterator(string1);
-        final Iterator<String> iterator2 = new StringNumberPartIterator(string2);
-
-        while (iterator1.hasNext() && iterator2.hasNext()) {
-            final String part1 = iterator1.next();
-            final String part2 = iterator2.next();
+        final int length1 = string1.length();
+        final int length2 = string2.length();
+        int index1 = 0;
+        int index2 = 0;
+
+        while (index1 < length1 && index2 < length2) {
+            final char char1 = string1.charAt(index1);
+            final char char2 = string2.charAt(index2);
+            final boolean isDigit1 = Character.isDigit(char1);
+            final boolean isDigit2 = Character.isDigit(char2);
+            final int partEnd1 = partEnd(string1, index1, isDigit1);
+            final int partEnd2 = partEnd(string2, index2, isDigit2);
             final int result;
 
-            if (isNumber(part1) && isNumber(part2)) {
-                result = new BigInteger(part1).compareTo(new BigInteger(part2));
+            if (isDigit1 && isDigit2) {
+                result = compareNumbers(string1, index1, partEnd1, string2, index2, partEnd2);
+            } else if (isDigit1 ^ isDigit2) {
+                // parts of different kind already differ in their first char
+                result = char1 - char2;
             } else {
-                result = part1.compareTo(part2);
+                result = compareText(string1, index1, partEnd1, string2, index2, partEnd2);
             }
 
             if (0 != result) {
                 return result;
             }
+
+            index1 = partEnd1;
+            index2 = partEnd2;
         }
 
-        return Integer.compare(string1.length(), string2.length());
+        return Integer.compare(length1, length2);
     }
 
-    private static boolean isNumber(final String string) {
-        return Character.isDigit(string.charAt(0));
-    }
+    /**
+     * Returns the end index (exclusive) of the part starting at {@code start}.
+     */
+    private static int partEnd(final String string, final int start, final boolean isDigit) {
+        int end = start + 1;
 
-    private static class StringNumberPartIterator implements Iterator<String> {
+        while (end < string.length() && isDigit == Character.isDigit(string.charAt(end))) {
+            end++;
+        }
 
-        private final String string;
-        private int index = 0;
+        return end;
+    }
 
-        private StringNumberPartIterator(final String string) {
-            this.string = string;
+    /**
+     * Compares two digit parts by their number value without parsing them:
+     * leading zeros are skipped, then the number of significant digits and
+     * finally the digits themselves are compared.
+     */
+    private static int compareNumbers(final String string1, int start1, final int end1, final String string2, int start2, final int end2) {
+        while (start1 < end1 && 0 == Character.digit(string1.charAt(start1), 10)) {
+            start1++;
         }
 
-        @Override
-        public boolean hasNext() {
-            return index < string.length();
+        while (start2 < end2 && 0 == Character.digit(string2.charAt(start2), 10)) {
+            start2++;
         }
 
-        @Override
-        public String next() {
-            boolean isDigit = Character.isDigit(string.charAt(index));
-            int partIndexEnd = index + 1;
+        final int digits1 = end1 - start1;
+        final int digits2 = end2 - start2;
+
+        if (digits1 != digits2) {
+            return digits1 < digits2 ? -1 : 1;
+        }
 
-            while (partIndexEnd < string.length()) {
-                if (isDigit ^ Character.isDigit(string.charAt(partIndexEnd))) {
-                    break;
-                }
-                partIndexEnd++;
+        for (; start1 < end1; start1++, start2++) {
+            final int digit1 = Character.digit(string1.charAt(start1), 10);
+            final int digit2 = Character.digit(string2.charAt(start2), 10);
+
+            if (digit1 != digit2) {
+                return digit1 < digit2 ? -1 : 1;
             }
+        }
+
+        return 0;
+    }
 
-            final String result = string.substring(index, partIndexEnd);
-            index = partIndexEnd;
-            return result;
+    /**
+     * Compares two non-digit parts the way {@link String#compareTo(String)}
+     * compares the corresponding substrings.
+     */
+    private static int compareText(final String string1, final int start1, final int end1, final String string2, final int start2, final int end2) {
+        final int length1 = end1 - start1;
+        final int length2 = end2 - start2;
+        final int length = Math.min(length1, length2);
+
+        for (int i = 0; i < length; i++) {
+            final char char1 = string1.charAt(start1 + i);
+            final char char2 = string2.charAt(start2 + i);
+
+            if (char1 != char2) {
+                return char1 - char2;
+            }
         }
+
+        return length1 - length2;
     }
 }
@@ -0,0 +1,307 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014-2018 TweetWallFX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tweetwallfx.tweet.api;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import static org.tweetwall.util.ToString.*;
+
+/**
+ * Tweeter decorating another Tweeter with caches for Tweets and search
+ * results.
+ * <p>
+ * Tweets looked up by {@link #getTweet(long)} are kept in a size bounded
+ * cache evicting the least recently used Tweet. Results of
+ * {@link #search(TweetQuery)} are kept for a time to live depending on the
+ * {@link TweetQuery.ResultType} of the query, with concurrent identical
+ * searches sharing one call to the decorated Tweeter. All other operations are
+ * passed on unchanged.
+ */
+public class CachingTweeter extends Tweeter {
+
+    private static final int DEFAULT_MAX_TWEETS = 1000;
+    private static final Map<TweetQuery.ResultType, Long> DEFAULT_SEARCH_TTL_MILLIS;
+
+    static {
+        final Map<TweetQuery.ResultType, Long> searchTtlMillis = new EnumMap<>(TweetQuery.ResultType.class);
+        searchTtlMillis.put(TweetQuery.ResultType.recent, TimeUnit.SECONDS.toMillis(5));
+        searchTtlMillis.put(TweetQuery.ResultType.mixed, TimeUnit.SECONDS.toMillis(30));
+        searchTtlMillis.put(TweetQuery.ResultType.popular, TimeUnit.MINUTES.toMillis(1));
+        DEFAULT_SEARCH_TTL_MILLIS = Collections.unmodifiableMap(searchTtlMillis);
+    }
+
+    private final Tweeter delegate;
+    private final Map<Long, Tweet> tweets;
+    private final Map<TweetQuery.ResultType, Long> searchTtlMillis;
+    private final SearchCoalescer searchCoalescer;
+    private final LongAdder tweetHits = new LongAdder();
+    private final LongAdder tweetMisses = new LongAdder();
+    private final LongAdder tweetEvictions = new LongAdder();
+    private final LongAdder searchRequests = new LongAdder();
+    private final LongAdder searchMisses = new LongAdder();
+
+    /**
+     * Creates a CachingTweeter decorating the Tweeter provided by
+     * {@link Tweeter#getInstance()} with the default cache settings.
+     */
+    public CachingTweeter() {
+        this(Tweeter.getInstance());
+    }
+
+    /**
+     * Creates a CachingTweeter decorating the {@code delegate} with the
+     * default cache settings: up to 1000 Tweets and search results kept for 5
+     * seconds ({@code recent}), 30 seconds ({@code mixed} or no result type)
+     * and 1 minute ({@code popular}).
+     *
+     * @param delegate the decorated Tweeter
+     */
+    public CachingTweeter(final Tweeter delegate) {
+        this(delegate, DEFAULT_MAX_TWEETS, DEFAULT_SEARCH_TTL_MILLIS);
+    }
+
+    /**
+     * Creates a CachingTweeter decorating the {@code delegate}.
+     *
+     * @param delegate the decorated Tweeter
+     *
+     * @param maxTweets the maximum number of Tweets kept
+     *
+     * @param searchTtlMillis the number of milliseconds search results are
+     * kept per result type, with queries without result type using the value
+     * of {@link TweetQuery.ResultType#mixed}
+     */
+    public CachingTweeter(final Tweeter delegate, final int maxTweets, final Map<TweetQuery.ResultType, Long> searchTtlMillis) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate must not be null!");
+        this.searchTtlMillis = new EnumMap<>(searchTtlMillis);
+        this.tweets = new LinkedHashMap<Long, Tweet>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, Tweet> eldest) {
+                if (size() > maxTweets) {
+                    tweetEvictions.increment();
+                    return true;
+                }
+
+                return false;
+            }
+        };
+        this.searchCoalescer = new SearchCoalescer(tweetQuery -> {
+            searchMisses.increment();
+            return delegate.search(tweetQuery);
+        }, tweetQuery -> TimeUnit.MILLISECONDS.toNanos(getSearchTtlMillis(tweetQuery)));
+    }
+
+    private long getSearchTtlMillis(final TweetQuery tweetQuery) {
+        final TweetQuery.ResultType resultType = null == tweetQuery.getResultType()
+                ? TweetQuery.ResultType.mixed
+                : tweetQuery.getResultType();
+
+        return searchTtlMillis.getOrDefault(resultType, 0L);
+    }
+
+    @Override
+    public TweetStream createTweetStream(final TweetFilterQuery filterQuery) {
+        return delegate.createTweetStream(filterQuery);
+    }
+
+    @Override
+    public Tweet getTweet(final long tweetId) {
+        Tweet tweet;
+
+        synchronized (tweets) {
+            tweet = tweets.get(tweetId);
+        }
+
+        if (null != tweet) {
+            tweetHits.increment();
+            return tweet;
+        }
+
+        tweetMisses.increment();
+        tweet = delegate.getTweet(tweetId);
+
+        if (null != tweet) {
+            synchronized (tweets) {
+                tweets.put(tweetId, tweet);
+            }
+        }
+
+        return tweet;
+    }
+
+    @Override
+    public Stream<Tweet> lookup(final LongStream tweetIds) {
+        final long[] ids = tweetIds.distinct().toArray();
+        final Map<Long, Tweet> found = new HashMap<>(ids.length * 2);
+
+        synchronized (tweets) {
+            for (final long id : ids) {
+                final Tweet tweet = tweets.get(id);
+
+                if (null != tweet) {
+                    found.put(id, tweet);
+                }
+            }
+        }
+
+        tweetHits.add(found.size());
+        tweetMisses.add(ids.length - found.size());
+
+        if (found.size() < ids.length) {
+            delegate.lookup(Arrays.stream(ids).filter(id -> !found.containsKey(id)))
+                    .forEach(tweet -> found.put(tweet.getId(), tweet));
+
+            synchronized (tweets) {
+                found.forEach(tweets::put);
+            }
+        }
+
+        return Arrays.stream(ids)
+                .mapToObj(found::get)
+                .filter(Objects::nonNull);
+    }
+
+    @Override
+    public Stream<Tweet> search(final TweetQuery tweetQuery) {
+        searchRequests.increment();
+        return searchCoalescer.search(tweetQuery);
+    }
+
+    @Override
+    public Stream<Tweet> searchIncremental(final TweetQuery tweetQuery) {
+        return delegate.searchIncremental(tweetQuery);
+    }
+
+    @Override
+    public Stream<Tweet> searchPaged(final TweetQuery tweetQuery, final int numberOfPages) {
+        return delegate.searchPaged(tweetQuery, numberOfPages);
+    }
+
+    @Override
+    public Stream<Tweet> replayJournal() {
+        return delegate.replayJournal();
+    }
+
+    @Override
+    public void createTweetStream() {
+        delegate.createTweetStream();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    /**
+     * Returns the statistics of the Tweet cache.
+     *
+     * @return the statistics of the Tweet cache
+     */
+    public Statistics getTweetStatistics() {
+        return new Statistics(tweetHits.sum(), tweetMisses.sum(), tweetEvictions.sum());
+    }
+
+    /**
+     * Returns the statistics of the search result cache.
+     *
+     * @return the statistics of the search result cache
+     */
+    public Statistics getSearchStatistics() {
+        final long misses = searchMisses.sum();
+
+        return new Statistics(Math.max(0, searchRequests.sum() - misses), misses, searchCoalescer.getEvictionCount());
+    }
+
+    @Override
+    public String toString() {
+        return createToString(this, map(
+                "delegate", delegate,
+                "tweetStatistics", getTweetStatistics(),
+                "searchStatistics", getSearchStatistics()
+        ));
+    }
+
+    /**
+     * Snapshot of the hit, miss and eviction counts of a cache.
+     */
+    public static final class Statistics {
+
+        private final long hitCount;
+        private final long missCount;
+        private final long evictionCount;
+
+        private Statistics(final long hitCount, final long missCount, final long evictionCount) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+        }
+
+        /**
+         * Returns the number of lookups answered from the cache.
+         *
+         * @return the number of lookups answered from the cache
+         */
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        /**
+         * Returns the number of lookups passed on to the decorated Tweeter.
+         *
+         * @return the number of lookups passed on to the decorated Tweeter
+         */
+        public long getMissCount() {
+            return missCount;
+        }
+
+        /**
+         * Returns the number of entries removed from the cache.
+         *
+         * @return the number of entries removed from the cache
+         */
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        @Override
+        public String toString() {
+            return createToString(this, map(
+                    "hitCount", hitCount,
+                    "missCount", missCount,
+                    "evictionCount", evictionCount
+            ));
+        }
+    }
+}
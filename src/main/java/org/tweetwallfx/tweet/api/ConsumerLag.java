@@ -0,0 +1,91 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014-2018 TweetWallFX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tweetwallfx.tweet.api;
+
+import java.util.function.Consumer;
+import static org.tweetwall.util.ToString.*;
+
+/**
+ * Snapshot of how far a consumer of a {@link TweetStream} lags behind the
+ * Tweets published to it.
+ */
+public final class ConsumerLag {
+
+    private final Consumer<Tweet> consumer;
+    private final long lag;
+    private final long dropped;
+
+    /**
+     * Creates a snapshot of the lag of {@code consumer}.
+     *
+     * @param consumer the consumer
+     *
+     * @param lag the number of published Tweets the consumer has not yet read
+     *
+     * @param dropped the number of Tweets the consumer missed
+     */
+    public ConsumerLag(final Consumer<Tweet> consumer, final long lag, final long dropped) {
+        this.consumer = consumer;
+        this.lag = lag;
+        this.dropped = dropped;
+    }
+
+    /**
+     * Returns the consumer this snapshot was taken of.
+     *
+     * @return the consumer
+     */
+    public Consumer<Tweet> getConsumer() {
+        return consumer;
+    }
+
+    /**
+     * Returns the number of published Tweets the consumer had not yet read.
+     *
+     * @return the number of published Tweets the consumer had not yet read
+     */
+    public long getLag() {
+        return lag;
+    }
+
+    /**
+     * Returns the number of Tweets the consumer missed because it was a full
+     * buffer behind, either as they were discarded or as they were overwritten
+     * before being read.
+     *
+     * @return the number of Tweets the consumer missed
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    @Override
+    public String toString() {
+        return createToString(this, map(
+                "consumer", getConsumer(),
+                "lag", getLag(),
+                "dropped", getDropped()
+        ));
+    }
+}
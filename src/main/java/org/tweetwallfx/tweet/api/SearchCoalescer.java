@@ -0,0 +1,184 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014-2018 TweetWallFX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tweetwallfx.tweet.api;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Coalesces concurrent identical searches into a single search.
+ * <p>
+ * The first caller of a query performs the search while concurrent callers of
+ * an equal {@link TweetQuery} wait for and share its result. The result is
+ * kept for a time to live - which may depend on the query - during which
+ * further callers receive it without searching again.
+ */
+public final class SearchCoalescer {
+
+    private final Function<TweetQuery, Stream<Tweet>> search;
+    private final ToLongFunction<TweetQuery> ttlNanos;
+    private final Map<TweetQuery, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a coalescer keeping the results for the same time to live.
+     *
+     * @param search the search to coalesce
+     *
+     * @param ttl the time to live of a result
+     *
+     * @param unit the unit of {@code ttl}
+     */
+    public SearchCoalescer(final Function<TweetQuery, Stream<Tweet>> search, final long ttl, final TimeUnit unit) {
+        this(search, tweetQuery -> unit.toNanos(ttl));
+    }
+
+    /**
+     * Creates a coalescer keeping the results for a time to live depending on
+     * the query.
+     *
+     * @param search the search to coalesce
+     *
+     * @param ttlNanos the function returning the time to live in nanoseconds
+     * of a result of a query
+     */
+    public SearchCoalescer(final Function<TweetQuery, Stream<Tweet>> search, final ToLongFunction<TweetQuery> ttlNanos) {
+        this.search = search;
+        this.ttlNanos = ttlNanos;
+    }
+
+    /**
+     * Searches for Tweets matching the {@code tweetQuery} unless an equal
+     * search is in progress or its result is still alive.
+     *
+     * @param tweetQuery the query
+     *
+     * @return the Tweets matching the query
+     */
+    public Stream<Tweet> search(final TweetQuery tweetQuery) {
+        final TweetQuery key = tweetQuery.copy();
+
+        while (true) {
+            final Entry entry = entries.get(key);
+
+            if (null != entry && entry.isAlive(System.nanoTime())) {
+                return entry.join().stream();
+            }
+
+            final Entry newEntry = new Entry();
+            final boolean leader = null == entry
+                    ? null == entries.putIfAbsent(key, newEntry)
+                    : entries.replace(key, entry, newEntry);
+
+            if (leader) {
+                if (null != entry) {
+                    evictions.increment();
+                }
+
+                return newEntry.run(key).stream();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of queries whose result or search is currently kept.
+     *
+     * @return the number of queries whose result or search is currently kept
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of results removed after their time to live expired.
+     *
+     * @return the number of results removed after their time to live expired
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private void evictExpired(final long now) {
+        entries.values().removeIf(entry -> {
+            if (entry.isAlive(now)) {
+                return false;
+            }
+
+            evictions.increment();
+            return true;
+        });
+    }
+
+    /**
+     * Search of one query and its result.
+     */
+    private final class Entry {
+
+        private final CompletableFuture<List<Tweet>> future = new CompletableFuture<>();
+        private volatile long expiresAt;
+
+        private boolean isAlive(final long now) {
+            return !future.isDone() || now - expiresAt < 0;
+        }
+
+        private List<Tweet> join() {
+            try {
+                return future.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+
+                throw ex;
+            }
+        }
+
+        private List<Tweet> run(final TweetQuery key) {
+            final List<Tweet> result;
+
+            try {
+                result = search.apply(key).collect(Collectors.toList());
+            } catch (RuntimeException | Error ex) {
+                // failures are shared with the waiting callers but not kept
+                entries.remove(key, this);
+                future.completeExceptionally(ex);
+                throw ex;
+            }
+
+            expiresAt = System.nanoTime() + ttlNanos.applyAsLong(key);
+            future.complete(result);
+            evictExpired(System.nanoTime());
+            return result;
+        }
+    }
+}
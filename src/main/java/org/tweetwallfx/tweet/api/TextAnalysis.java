@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014-2018 TweetWallFX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tweetwallfx.tweet.api;
+
+import org.tweetwallfx.tweet.api.entry.EmojiTweetEntry;
+
+/**
+ * Analysis of a Tweet text computed once and shared by all code point based
+ * operations on that text: the decoded code points, the emoji entries and the
+ * mapping from code point to UTF-16 offsets.
+ */
+public final class TextAnalysis {
+
+    private static final int EMOJI_CODE_POINT_START = 0x1f000;
+    private final int[] codePoints;
+    private final int[] charIndexes;
+    private final EmojiTweetEntry[] emojiEntries;
+
+    /**
+     * Analyzes the provided {@code text}.
+     *
+     * @param text the text to analyze
+     */
+    public TextAnalysis(final String text) {
+        this.codePoints = text.codePoints().toArray();
+        this.charIndexes = new int[codePoints.length + 1];
+
+        int emojiCount = 0;
+
+        for (int i = 0; i < codePoints.length; i++) {
+            charIndexes[i + 1] = charIndexes[i] + Character.charCount(codePoints[i]);
+
+            if (codePoints[i] >= EMOJI_CODE_POINT_START) {
+                emojiCount++;
+            }
+        }
+
+        this.emojiEntries = new EmojiTweetEntry[emojiCount];
+
+        for (int i = 0, e = 0; e < emojiCount; i++) {
+            if (codePoints[i] >= EMOJI_CODE_POINT_START) {
+                emojiEntries[e++] = new EmojiTweetEntry(new String(codePoints, i, 1), i);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of code points in the text.
+     *
+     * @return the number of code points in the text
+     */
+    public int getCodePointCount() {
+        return codePoints.length;
+    }
+
+    /**
+     * Returns the code point at the code point index {@code codePointIndex}.
+     *
+     * @param codePointIndex the code point index
+     *
+     * @return the code point
+     */
+    public int getCodePoint(final int codePointIndex) {
+        return codePoints[codePointIndex];
+    }
+
+    /**
+     * Returns a copy of the emoji entries of the text, so that callers cannot
+     * alter the shared analysis.
+     *
+     * @return the emoji entries of the text
+     */
+    public EmojiTweetEntry[] getEmojiEntries() {
+        return emojiEntries.clone();
+    }
+
+    /**
+     * Converts a code point index into the UTF-16 char index at which the
+     * code point starts. The code point count maps to the text length.
+     *
+     * @param codePointIndex the code point index
+     *
+     * @return the UTF-16 char index
+     */
+    public int toCharIndex(final int codePointIndex) {
+        return charIndexes[codePointIndex];
+    }
+}
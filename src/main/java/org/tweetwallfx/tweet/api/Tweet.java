@@ -24,13 +24,12 @@
 package org.tweetwallfx.tweet.api;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Comparator;
 import org.tweetwallfx.tweet.api.entry.BasicEntry;
 import java.util.Date;
 import java.util.Set;
 import java.util.TreeSet;
-import static java.util.stream.Collectors.toSet;
-import java.util.stream.IntStream;
 import org.tweetwallfx.tweet.api.entry.EmojiTweetEntry;
 import org.tweetwallfx.tweet.api.entry.HashtagTweetEntry;
 import org.tweetwallfx.tweet.api.entry.MediaTweetEntry;
@@ -88,13 +87,18 @@ public interface Tweet extends BasicEntry {
         return textExtractor;
     }
 
-    public default EmojiTweetEntry[] getEmojiEntries() {
-        final int[] codePoints = getText().codePoints().toArray();
+    /**
+     * Returns the analysis of the text of this Tweet. Implementations should
+     * compute it once and return the same instance on every call.
+     *
+     * @return the analysis of the text of this Tweet
+     */
+    public default TextAnalysis getTextAnalysis() {
+        return new TextAnalysis(getText());
+    }
 
-        return IntStream.range(0, codePoints.length)
-                .filter(i -> codePoints[i] >= 0x1f000)
-                .mapToObj(i -> new EmojiTweetEntry(new String(codePoints, i, 1), i))
-                .toArray(i -> new EmojiTweetEntry[i]);
+    public default EmojiTweetEntry[] getEmojiEntries() {
+        return getTextAnalysis().getEmojiEntries();
     }
 
     public default TextExtractor getTextWithout(final Class<? extends TweetEntry> entryToRemove) {
@@ -143,29 +147,55 @@ public interface Tweet extends BasicEntry {
                 return tweet.getText();
             }
 
-            IntStream filteredIndexes = IntStream.empty();
+            final BitSet indexesToFilterOut = new BitSet();
             for (TweetEntry tweetEntry : entriesToRemove) {
-                final IntStream nextFilter;
+                final int start = Math.max(0, tweetEntry.getStart());
 
                 if (tweetEntry.getStart() == tweetEntry.getEnd()) {
-                    nextFilter = IntStream.of(tweetEntry.getStart());
+                    if (tweetEntry.getStart() >= 0) {
+                        indexesToFilterOut.set(tweetEntry.getStart());
+                    }
+                } else if (start < tweetEntry.getEnd()) {
+                    indexesToFilterOut.set(start, tweetEntry.getEnd());
+                }
+            }
+
+            // single pass over the code points dropping filtered indexes and
+            // collapsing runs of spaces
+            final TextAnalysis textAnalysis = tweet.getTextAnalysis();
+            final StringBuilder sb = new StringBuilder(textAnalysis.toCharIndex(textAnalysis.getCodePointCount()));
+            boolean previousWasSpace = false;
+
+            for (int codePointIndex = 0; codePointIndex < textAnalysis.getCodePointCount(); codePointIndex++) {
+                final int codePoint = textAnalysis.getCodePoint(codePointIndex);
+
+                if (indexesToFilterOut.get(codePointIndex)) {
+                    continue;
+                } else if (' ' == codePoint) {
+                    if (!previousWasSpace) {
+                        sb.append(' ');
+                    }
+
+                    previousWasSpace = true;
                 } else {
-                    nextFilter = IntStream.range(tweetEntry.getStart(), tweetEntry.getEnd());
+                    sb.appendCodePoint(codePoint);
+                    previousWasSpace = false;
                 }
+            }
+
+            // equivalent of String.trim()
+            int begin = 0;
+            int end = sb.length();
 
-                filteredIndexes = IntStream.concat(filteredIndexes, nextFilter);
+            while (begin < end && sb.charAt(begin) <= ' ') {
+                begin++;
             }
 
-            final Set<Integer> indexesToFilterOut = filteredIndexes.boxed().collect(toSet());
-            final int[] codePoints = tweet.getText().codePoints().toArray();
-            final int[] filteredCodePoints = IntStream.range(0, codePoints.length)
-                    .filter(i -> !indexesToFilterOut.contains(i))
-                    .map(i -> codePoints[i])
-                    .toArray();
+            while (begin < end && sb.charAt(end - 1) <= ' ') {
+                end--;
+            }
 
-            return new String(filteredCodePoints, 0, filteredCodePoints.length)
-                    .replaceAll("  *", " ")
-                    .trim();
+            return sb.substring(begin, end);
         }
     }
 
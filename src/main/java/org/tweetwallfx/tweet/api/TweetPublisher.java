@@ -0,0 +1,178 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014-2018 TweetWallFX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tweetwallfx.tweet.api;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Reactive Streams view of a {@link TweetStream}. Every subscriber gets its
+ * own bounded buffer and receives Tweets only as far as it has signalled
+ * demand. Tweets arriving while a subscribers buffer is full are handled
+ * according to the {@link OverflowPolicy}.
+ */
+public final class TweetPublisher implements Publisher<Tweet> {
+
+    private static final Logger LOGGER = LogManager.getLogger(TweetPublisher.class);
+    private final List<TweetSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final int bufferSize;
+    private final OverflowPolicy overflowPolicy;
+
+    /**
+     * Creates a publisher receiving its Tweets from the {@code tweetStream}.
+     *
+     * @param tweetStream the stream providing the Tweets
+     *
+     * @param bufferSize the maximum number of Tweets buffered per subscriber
+     *
+     * @param overflowPolicy the policy to apply when a subscribers buffer is
+     * full
+     */
+    public TweetPublisher(final TweetStream tweetStream, final int bufferSize, final OverflowPolicy overflowPolicy) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be positive but was " + bufferSize);
+        }
+
+        this.bufferSize = bufferSize;
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy, "overflowPolicy must not be null!");
+        tweetStream.onTweet(tweet -> subscriptions.forEach(subscription -> subscription.offer(tweet)));
+    }
+
+    @Override
+    public void subscribe(final Subscriber<? super Tweet> subscriber) {
+        final TweetSubscription subscription = new TweetSubscription(Objects.requireNonNull(subscriber, "subscriber must not be null!"));
+        subscriptions.add(subscription);
+        subscriber.onSubscribe(subscription);
+    }
+
+    private final class TweetSubscription implements Subscription {
+
+        private final Subscriber<? super Tweet> subscriber;
+        private final Deque<Tweet> buffer = new ArrayDeque<>();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger drainRequests = new AtomicInteger();
+        private volatile boolean cancelled = false;
+
+        private TweetSubscription(final Subscriber<? super Tweet> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        private void offer(final Tweet tweet) {
+            synchronized (buffer) {
+                while (!cancelled && buffer.size() >= bufferSize) {
+                    switch (overflowPolicy) {
+                        case BLOCK:
+                            try {
+                                buffer.wait();
+                            } catch (InterruptedException ex) {
+                                Thread.currentThread().interrupt();
+                                return;
+                            }
+                            break;
+                        case DROP_NEWEST:
+                            return;
+                        default:
+                            buffer.pollFirst();
+                            break;
+                    }
+                }
+
+                if (cancelled) {
+                    return;
+                }
+
+                buffer.addLast(tweet);
+            }
+
+            drain();
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("non-positive subscription request: " + n));
+                return;
+            }
+
+            demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+
+            synchronized (buffer) {
+                buffer.clear();
+                buffer.notifyAll();
+            }
+        }
+
+        /**
+         * Delivers buffered Tweets as far as there is demand. Only one thread
+         * delivers at a time, so that subscriber signals are never concurrent.
+         */
+        private void drain() {
+            if (0 != drainRequests.getAndIncrement()) {
+                return;
+            }
+
+            do {
+                while (!cancelled && demand.get() > 0) {
+                    final Tweet tweet;
+
+                    synchronized (buffer) {
+                        tweet = buffer.pollFirst();
+                        buffer.notifyAll();
+                    }
+
+                    if (null == tweet) {
+                        break;
+                    }
+
+                    demand.getAndUpdate(current -> Long.MAX_VALUE == current ? current : current - 1);
+
+                    try {
+                        subscriber.onNext(tweet);
+                    } catch (RuntimeException ex) {
+                        LOGGER.error("Subscriber " + subscriber + " failed handling " + tweet + ", cancelling subscription", ex);
+                        cancel();
+                    }
+                }
+            } while (0 != drainRequests.decrementAndGet());
+        }
+    }
+}
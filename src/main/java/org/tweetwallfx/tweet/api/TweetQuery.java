@@ -373,6 +373,25 @@ public final class TweetQuery {
         return this;
     }
 
+    /**
+     * Creates a copy of this query, e.g. for use as a key that must not change
+     * when this query is modified.
+     *
+     * @return the copy
+     */
+    public TweetQuery copy() {
+        return new TweetQuery()
+                .query(query)
+                .lang(lang)
+                .locale(locale)
+                .maxId(maxId)
+                .count(count)
+                .since(since)
+                .sinceId(sinceId)
+                .until(until)
+                .resultType(resultType);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
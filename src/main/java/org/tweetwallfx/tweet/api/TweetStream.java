@@ -23,7 +23,10 @@
  */
 package org.tweetwallfx.tweet.api;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.function.Consumer;
+import org.reactivestreams.Publisher;
 
 public interface TweetStream {
 
@@ -34,4 +37,30 @@ public interface TweetStream {
      */
     void onTweet(Consumer<Tweet> tweetConsumer);
 
+    /**
+     * Creates a Reactive Streams Publisher of the Tweets of this stream whose
+     * subscribers receive Tweets according to their signalled demand.
+     *
+     * @param bufferSize the maximum number of Tweets buffered per subscriber
+     *
+     * @param overflowPolicy the policy to apply when a subscribers buffer is
+     * full
+     *
+     * @return the Publisher
+     */
+    default Publisher<Tweet> toPublisher(final int bufferSize, final OverflowPolicy overflowPolicy) {
+        return new TweetPublisher(this, bufferSize, overflowPolicy);
+    }
+
+    /**
+     * Returns how far each consumer added via {@link #onTweet(Consumer)} lags
+     * behind the Tweets of this stream. Streams that do not buffer Tweets per
+     * consumer return an empty list.
+     *
+     * @return the lag of each consumer of this stream
+     */
+    default List<ConsumerLag> getConsumerLags() {
+        return Collections.emptyList();
+    }
+
 }
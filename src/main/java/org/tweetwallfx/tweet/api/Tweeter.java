@@ -24,12 +24,24 @@
 package org.tweetwallfx.tweet.api;
 
 import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
 import java.util.ServiceLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 public abstract class Tweeter {
 
     private static Tweeter INSTANCE;
+    private volatile Executor asyncExecutor;
 
     public static final Tweeter getInstance() {
         if (null == INSTANCE) {
@@ -55,10 +67,175 @@ public abstract class Tweeter {
 
     public abstract Tweet getTweet(final long tweetId);
 
+    /**
+     * Looks up the Tweets with the provided ids.
+     *
+     * @param tweetIds the ids of the Tweets
+     *
+     * @return the Tweets found, in the order of their ids
+     */
+    public final Stream<Tweet> getTweets(final long... tweetIds) {
+        return lookup(LongStream.of(tweetIds));
+    }
+
+    /**
+     * Looks up the Tweets with the provided ids. Implementations fetch the
+     * Tweets in batches instead of one by one.
+     * <p>
+     * The default implementation calls {@link #getTweet(long)} for each id.
+     *
+     * @param tweetIds the ids of the Tweets
+     *
+     * @return the Tweets found, in the order of their ids
+     */
+    public Stream<Tweet> lookup(final LongStream tweetIds) {
+        return tweetIds.distinct()
+                .mapToObj(this::getTweet)
+                .filter(Objects::nonNull);
+    }
+
     public abstract Stream<Tweet> search(final TweetQuery tweetQuery);
 
+    /**
+     * Searches incrementally for Tweets matching the {@code tweetQuery}.
+     * Implementations remember the highest Tweet id seen per query and only
+     * fetch newer Tweets on subsequent calls, merging them into a window of
+     * the most recent Tweets bounded by the queries count.
+     * <p>
+     * The default implementation performs a regular {@link #search(TweetQuery)}.
+     *
+     * @param tweetQuery the query, which must not be modified once used with
+     * this method
+     *
+     * @return the Tweets in the current window, most recent first
+     */
+    public Stream<Tweet> searchIncremental(final TweetQuery tweetQuery) {
+        return search(tweetQuery);
+    }
+
     public abstract Stream<Tweet> searchPaged(final TweetQuery tweetQuery, int numberOfPages);
 
+    /**
+     * Returns the Tweets received recently, including those received before a
+     * restart, without contacting the service. Implementations record the
+     * Tweets they receive in a persistent journal for this purpose.
+     * <p>
+     * The default implementation keeps no record of received Tweets and
+     * returns an empty Stream.
+     *
+     * @return the Tweets received recently, most recent first
+     */
+    public Stream<Tweet> replayJournal() {
+        return Stream.empty();
+    }
+
+    /**
+     * Retrieves the Tweet with the {@code tweetId} on the
+     * {@link #getAsyncExecutor() async executor}.
+     *
+     * @param tweetId the id of the Tweet
+     *
+     * @return the future completed with the Tweet
+     */
+    public CompletableFuture<Tweet> getTweetAsync(final long tweetId) {
+        return CompletableFuture.supplyAsync(() -> getTweet(tweetId), getAsyncExecutor());
+    }
+
+    /**
+     * Searches for Tweets matching the {@code tweetQuery} on the
+     * {@link #getAsyncExecutor() async executor}.
+     *
+     * @param tweetQuery the query
+     *
+     * @return the future completed with the Tweets found
+     */
+    public CompletableFuture<List<Tweet>> searchAsync(final TweetQuery tweetQuery) {
+        return CompletableFuture.supplyAsync(() -> search(tweetQuery).collect(Collectors.toList()), getAsyncExecutor());
+    }
+
+    /**
+     * Searches for Tweets matching the {@code tweetQuery} over up to
+     * {@code numberOfPages} pages on the {@link #getAsyncExecutor() async
+     * executor}.
+     *
+     * @param tweetQuery the query
+     *
+     * @param numberOfPages the maximum number of pages to fetch
+     *
+     * @return the future completed with the Tweets found
+     */
+    public CompletableFuture<List<Tweet>> searchPagedAsync(final TweetQuery tweetQuery, final int numberOfPages) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (final Stream<Tweet> tweets = searchPaged(tweetQuery, numberOfPages)) {
+                return tweets.collect(Collectors.toList());
+            }
+        }, getAsyncExecutor());
+    }
+
+    /**
+     * Returns the executor the asynchronous operations of this Tweeter run
+     * on. Unless set via {@link #setAsyncExecutor(Executor)} it is created on
+     * first use by {@link #createAsyncExecutor()}.
+     *
+     * @return the executor the asynchronous operations run on
+     */
+    public final Executor getAsyncExecutor() {
+        Executor result = asyncExecutor;
+
+        if (null == result) {
+            synchronized (this) {
+                result = asyncExecutor;
+
+                if (null == result) {
+                    result = createAsyncExecutor();
+                    asyncExecutor = result;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Sets the executor the asynchronous operations of this Tweeter run on.
+     *
+     * @param asyncExecutor the executor the asynchronous operations run on
+     */
+    public final void setAsyncExecutor(final Executor asyncExecutor) {
+        this.asyncExecutor = Objects.requireNonNull(asyncExecutor, "asyncExecutor must not be null!");
+    }
+
+    /**
+     * Creates the default executor for the asynchronous operations of this
+     * Tweeter: a pool with one daemon thread per available processor.
+     *
+     * @return the created executor
+     */
+    protected Executor createAsyncExecutor() {
+        return createAsyncExecutor(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an executor with up to {@code threads} daemon threads, which
+     * time out when idle.
+     *
+     * @param threads the maximum number of threads
+     *
+     * @return the created executor
+     */
+    protected final ExecutorService createAsyncExecutor(final int threads) {
+        final String namePrefix = getClass().getSimpleName() + "-Async-";
+        final AtomicInteger threadCounter = new AtomicInteger();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                Math.max(1, threads), Math.max(1, threads), 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                    final Thread thread = new Thread(r, namePrefix + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     public void createTweetStream() {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
     }
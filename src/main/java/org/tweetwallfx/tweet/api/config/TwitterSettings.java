@@ -24,8 +24,10 @@
 package org.tweetwallfx.tweet.api.config;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import org.tweetwallfx.config.ConfigurationConverter;
+import org.tweetwallfx.tweet.api.OverflowPolicy;
 import static org.tweetwall.util.ToString.*;
 
 /**
@@ -38,10 +40,43 @@ public final class TwitterSettings {
      * in the configuration data map.
      */
     public static final String CONFIG_KEY = "twitter";
+    private int asyncThreads = 8;
     private boolean debugEnabled = false;
     private Map<String, Object> extendedConfig;
     private boolean extendedMode = false;
+    private String journalDirectory;
+    private int journalMaxSegments = 8;
+    private int journalReplayWindow = 3600;
+    private long journalSegmentBytes = 16L * 1024 * 1024;
     private OAuth oauth;
+    private List<OAuth> oauths;
+    private int rateLimitMaxWait = 5;
+    private long searchCacheTtl = 1000;
+    private int searchReadAhead = 2;
+    private int searchThreads = 4;
+    private int streamBufferSize = 1024;
+    private OverflowPolicy streamOverflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+    /**
+     * Returns the maximum number of threads running asynchronous operations of
+     * the twitter client.
+     *
+     * @return the maximum number of threads running asynchronous operations
+     */
+    public int getAsyncThreads() {
+        return asyncThreads;
+    }
+
+    /**
+     * Sets the maximum number of threads running asynchronous operations of
+     * the twitter client.
+     *
+     * @param asyncThreads the maximum number of threads running asynchronous
+     * operations
+     */
+    public void setAsyncThreads(final int asyncThreads) {
+        this.asyncThreads = asyncThreads;
+    }
 
     /**
      * Returns a flag indicating that the twitter client is to work in debug
@@ -127,13 +162,264 @@ public final class TwitterSettings {
         this.oauth = oauth;
     }
 
+    /**
+     * Returns additional OAuth settings the twitter client may use in order
+     * to connect with twitter. REST calls are balanced across all configured
+     * OAuth settings by their remaining rate limit.
+     *
+     * @return additional OAuth settings the twitter client may use in order
+     * to connect with twitter
+     */
+    public List<OAuth> getOauths() {
+        return null == oauths
+                ? Collections.emptyList()
+                : Collections.unmodifiableList(oauths);
+    }
+
+    /**
+     * Sets additional OAuth settings the twitter client may use in order to
+     * connect with twitter.
+     *
+     * @param oauths additional OAuth settings the twitter client may use in
+     * order to connect with twitter
+     */
+    public void setOauths(final List<OAuth> oauths) {
+        this.oauths = oauths;
+    }
+
+    /**
+     * Returns the directory the journal of received Tweets is stored in or
+     * {@code null} if no journal is kept.
+     *
+     * @return the directory the journal of received Tweets is stored in
+     */
+    public String getJournalDirectory() {
+        return journalDirectory;
+    }
+
+    /**
+     * Sets the directory the journal of received Tweets is stored in. Setting
+     * it to {@code null}, the default, disables the journal. The directory
+     * must be owned and only be writable by the user running the application.
+     *
+     * @param journalDirectory the directory the journal of received Tweets is
+     * stored in
+     */
+    public void setJournalDirectory(final String journalDirectory) {
+        this.journalDirectory = journalDirectory;
+    }
+
+    /**
+     * Returns the maximum number of segment files of the journal kept.
+     *
+     * @return the maximum number of segment files of the journal kept
+     */
+    public int getJournalMaxSegments() {
+        return journalMaxSegments;
+    }
+
+    /**
+     * Sets the maximum number of segment files of the journal kept. The oldest
+     * segments beyond this number are deleted.
+     *
+     * @param journalMaxSegments the maximum number of segment files of the
+     * journal kept
+     */
+    public void setJournalMaxSegments(final int journalMaxSegments) {
+        this.journalMaxSegments = journalMaxSegments;
+    }
+
+    /**
+     * Returns the number of seconds of the most recently received Tweets
+     * restored from the journal on startup.
+     *
+     * @return the number of seconds of Tweets restored from the journal
+     */
+    public int getJournalReplayWindow() {
+        return journalReplayWindow;
+    }
+
+    /**
+     * Sets the number of seconds of the most recently received Tweets restored
+     * from the journal on startup.
+     *
+     * @param journalReplayWindow the number of seconds of Tweets restored from
+     * the journal
+     */
+    public void setJournalReplayWindow(final int journalReplayWindow) {
+        this.journalReplayWindow = journalReplayWindow;
+    }
+
+    /**
+     * Returns the size in bytes after which a new segment file of the journal
+     * is started.
+     *
+     * @return the size in bytes of a segment file of the journal
+     */
+    public long getJournalSegmentBytes() {
+        return journalSegmentBytes;
+    }
+
+    /**
+     * Sets the size in bytes after which a new segment file of the journal is
+     * started.
+     *
+     * @param journalSegmentBytes the size in bytes of a segment file of the
+     * journal
+     */
+    public void setJournalSegmentBytes(final long journalSegmentBytes) {
+        this.journalSegmentBytes = journalSegmentBytes;
+    }
+
+    /**
+     * Returns the maximum number of seconds a REST call is delayed in order to
+     * respect the rate limit of twitter before it is rejected.
+     *
+     * @return the maximum number of seconds a REST call is delayed
+     */
+    public int getRateLimitMaxWait() {
+        return rateLimitMaxWait;
+    }
+
+    /**
+     * Sets the maximum number of seconds a REST call is delayed in order to
+     * respect the rate limit of twitter before it is rejected.
+     *
+     * @param rateLimitMaxWait the maximum number of seconds a REST call is
+     * delayed
+     */
+    public void setRateLimitMaxWait(final int rateLimitMaxWait) {
+        this.rateLimitMaxWait = rateLimitMaxWait;
+    }
+
+    /**
+     * Returns the number of milliseconds the result of a search is shared with
+     * subsequent identical searches.
+     *
+     * @return the number of milliseconds the result of a search is shared
+     */
+    public long getSearchCacheTtl() {
+        return searchCacheTtl;
+    }
+
+    /**
+     * Sets the number of milliseconds the result of a search is shared with
+     * subsequent identical searches. Identical searches running concurrently
+     * always share one result.
+     *
+     * @param searchCacheTtl the number of milliseconds the result of a search
+     * is shared
+     */
+    public void setSearchCacheTtl(final long searchCacheTtl) {
+        this.searchCacheTtl = searchCacheTtl;
+    }
+
+    /**
+     * Returns the number of pages a paged search requests ahead of the page
+     * currently consumed.
+     *
+     * @return the number of pages a paged search requests ahead of the page
+     * currently consumed
+     */
+    public int getSearchReadAhead() {
+        return searchReadAhead;
+    }
+
+    /**
+     * Sets the number of pages a paged search requests ahead of the page
+     * currently consumed.
+     *
+     * @param searchReadAhead the number of pages a paged search requests ahead
+     * of the page currently consumed
+     */
+    public void setSearchReadAhead(final int searchReadAhead) {
+        this.searchReadAhead = searchReadAhead;
+    }
+
+    /**
+     * Returns the maximum number of threads fetching pages of paged searches
+     * and batches of lookups.
+     *
+     * @return the maximum number of threads fetching pages of paged searches
+     * and batches of lookups
+     */
+    public int getSearchThreads() {
+        return searchThreads;
+    }
+
+    /**
+     * Sets the maximum number of threads fetching pages of paged searches and
+     * batches of lookups.
+     *
+     * @param searchThreads the maximum number of threads fetching pages of
+     * paged searches and batches of lookups
+     */
+    public void setSearchThreads(final int searchThreads) {
+        this.searchThreads = searchThreads;
+    }
+
+    /**
+     * Returns the number of Tweets buffered between the twitter stream and its
+     * consumers.
+     *
+     * @return the number of Tweets buffered between the twitter stream and its
+     * consumers
+     */
+    public int getStreamBufferSize() {
+        return streamBufferSize;
+    }
+
+    /**
+     * Sets the number of Tweets buffered between the twitter stream and its
+     * consumers. The value is rounded up to the next power of two.
+     *
+     * @param streamBufferSize the number of Tweets buffered between the
+     * twitter stream and its consumers
+     */
+    public void setStreamBufferSize(final int streamBufferSize) {
+        this.streamBufferSize = streamBufferSize;
+    }
+
+    /**
+     * Returns the policy applied when a Tweet is received from the twitter
+     * stream while the buffer is full.
+     *
+     * @return the policy applied when the stream buffer is full
+     */
+    public OverflowPolicy getStreamOverflowPolicy() {
+        return streamOverflowPolicy;
+    }
+
+    /**
+     * Sets the policy applied when a Tweet is received from the twitter stream
+     * while the buffer is full.
+     *
+     * @param streamOverflowPolicy the policy applied when the stream buffer is
+     * full
+     */
+    public void setStreamOverflowPolicy(final OverflowPolicy streamOverflowPolicy) {
+        this.streamOverflowPolicy = streamOverflowPolicy;
+    }
+
     @Override
     public String toString() {
-        return createToString(this, map(
-                "debugEnabled", isDebugEnabled(),
-                "extendedConfig", getExtendedConfig(),
-                "extendedMode", isExtendedMode(),
-                "oauth", getOauth()
+        return createToString(this, mapOf(
+                mapEntry("asyncThreads", getAsyncThreads()),
+                mapEntry("debugEnabled", isDebugEnabled()),
+                mapEntry("extendedConfig", getExtendedConfig()),
+                mapEntry("extendedMode", isExtendedMode()),
+                mapEntry("journalDirectory", getJournalDirectory()),
+                mapEntry("journalMaxSegments", getJournalMaxSegments()),
+                mapEntry("journalReplayWindow", getJournalReplayWindow()),
+                mapEntry("journalSegmentBytes", getJournalSegmentBytes()),
+                mapEntry("oauth", getOauth()),
+                mapEntry("oauths", getOauths()),
+                mapEntry("rateLimitMaxWait", getRateLimitMaxWait()),
+                mapEntry("searchCacheTtl", getSearchCacheTtl()),
+                mapEntry("searchReadAhead", getSearchReadAhead()),
+                mapEntry("searchThreads", getSearchThreads()),
+                mapEntry("streamBufferSize", getStreamBufferSize()),
+                mapEntry("streamOverflowPolicy", getStreamOverflowPolicy())
         )) + " extends " + super.toString();
     }
 
@@ -23,6 +23,7 @@
  */
 package org.tweetwallfx.tweet.api.entry;
 
+import java.util.Comparator;
 import java.util.Map;
 
 public interface MediaTweetEntry extends TweetEntry {
@@ -41,6 +42,20 @@ public interface MediaTweetEntry extends TweetEntry {
      */
     String getMediaUrl();
 
+    /**
+     * Returns the URL of the size variation {@code size} of the media.
+     * <p>
+     * The default implementation returns {@link #getMediaUrl()}.
+     *
+     * @param size the size variation, one of {@link Size#THUMB},
+     * {@link Size#SMALL}, {@link Size#MEDIUM} or {@link Size#LARGE}
+     *
+     * @return the URL of the size variation
+     */
+    default String getMediaUrl(final Integer size) {
+        return getMediaUrl();
+    }
+
     /**
      * Returns size variations of the media.
      *
@@ -48,6 +63,34 @@ public interface MediaTweetEntry extends TweetEntry {
      */
     Map<Integer, Size> getSizes();
 
+    /**
+     * Returns the smallest size variation that is not cropped and covers an
+     * area of {@code width} x {@code height} pixels. If no such size exists
+     * the largest size variation is returned.
+     *
+     * @param width the width of the area to cover
+     *
+     * @param height the height of the area to cover
+     *
+     * @return the key of the size variation in {@link #getSizes()} or
+     * {@code null} if there are no size variations
+     */
+    default Integer getSmallestSizeCovering(final int width, final int height) {
+        final Comparator<Map.Entry<Integer, Size>> byArea = Comparator.comparingLong(
+                e -> (long) e.getValue().getWidth() * e.getValue().getHeight());
+        final Map<Integer, Size> sizes = getSizes();
+
+        return sizes.entrySet().stream()
+                .filter(e -> Size.CROP != e.getValue().getResize())
+                .filter(e -> e.getValue().getWidth() >= width && e.getValue().getHeight() >= height)
+                .min(byArea)
+                .map(Map.Entry::getKey)
+                .orElseGet(() -> sizes.entrySet().stream()
+                        .max(byArea)
+                        .map(Map.Entry::getKey)
+                        .orElse(null));
+    }
+
     interface Size extends java.io.Serializable {
 
         Integer THUMB = 0;
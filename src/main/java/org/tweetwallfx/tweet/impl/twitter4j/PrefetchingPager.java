@@ -0,0 +1,175 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014-2018 TweetWallFX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tweetwallfx.tweet.impl.twitter4j;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.tweetwallfx.tweet.api.Tweet;
+import twitter4j.Query;
+import twitter4j.QueryResult;
+import twitter4j.Status;
+
+/**
+ * Spliterator over the Tweets of a paged search that fetches the following
+ * pages in the background while the current page is consumed.
+ * <p>
+ * As the query of a page is only known once the previous page has been
+ * received ({@link QueryResult#nextQuery()}) the pages are fetched one after
+ * the other, but up to {@code readAhead} pages are requested ahead of the
+ * consumer. Fetching stops once the requested number of pages has been
+ * fetched, a page has no successor or {@link #cancel()} is called.
+ * <p>
+ * The pages themselves are fetched by the provided search function, which
+ * returns {@code null} if no page can be fetched at all.
+ */
+final class PrefetchingPager implements Spliterator<Tweet> {
+
+    private static final Logger startupLogger = LogManager.getLogger("org.tweetwallfx.startup");
+
+    private final Function<Query, QueryResult> search;
+    private final Executor executor;
+    private final int readAhead;
+    private final int pageSize;
+    private final Deque<CompletableFuture<QueryResult>> pages = new ArrayDeque<>();
+    private int unrequestedPages;
+    private Iterator<Status> statuses;
+
+    PrefetchingPager(final Function<Query, QueryResult> search, final Executor executor, final Query query, final int numberOfPages, final int readAhead) {
+        this.search = search;
+        this.executor = executor;
+        this.readAhead = Math.max(1, readAhead);
+        this.pageSize = query.getCount() > 0 ? query.getCount() : TwitterTweeter.DEFAULT_SEARCH_COUNT;
+        this.unrequestedPages = Math.max(0, numberOfPages - 1);
+
+        if (numberOfPages > 0) {
+            pages.add(CompletableFuture.supplyAsync(() -> fetch(query), executor));
+            requestAhead();
+        }
+    }
+
+    private synchronized void requestAhead() {
+        while (unrequestedPages > 0 && pages.size() < readAhead) {
+            pages.add(pages.getLast().thenApplyAsync(
+                    previous -> null == previous ? null : fetch(previous.nextQuery()),
+                    executor));
+            unrequestedPages--;
+        }
+    }
+
+    private QueryResult fetch(final Query query) {
+        if (null == query) {
+            return null;
+        }
+
+        try {
+            startupLogger.trace("Querying next page: " + query);
+            return search.apply(query);
+        } catch (RuntimeException ex) {
+            startupLogger.trace("Querying next page failed: " + query, ex);
+            throw ex;
+        }
+    }
+
+    private boolean nextPage() {
+        final CompletableFuture<QueryResult> page;
+
+        synchronized (this) {
+            page = pages.poll();
+        }
+
+        if (null == page) {
+            return false;
+        }
+
+        final QueryResult queryResult;
+
+        try {
+            queryResult = page.join();
+        } catch (CompletionException ex) {
+            cancel();
+
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+
+            throw ex;
+        }
+
+        if (null == queryResult) {
+            cancel();
+            return false;
+        }
+
+        requestAhead();
+        statuses = queryResult.getTweets().iterator();
+        return true;
+    }
+
+    /**
+     * Stops fetching further pages. Pages currently being fetched are
+     * completed but not consumed.
+     */
+    synchronized void cancel() {
+        unrequestedPages = 0;
+        pages.forEach(page -> page.cancel(false));
+        pages.clear();
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super Tweet> action) {
+        while (null == statuses || !statuses.hasNext()) {
+            if (!nextPage()) {
+                return false;
+            }
+        }
+
+        action.accept(new TwitterTweet(statuses.next()));
+        return true;
+    }
+
+    @Override
+    public Spliterator<Tweet> trySplit() {
+        // pages depend on their predecessor and cannot be split off
+        return null;
+    }
+
+    @Override
+    public synchronized long estimateSize() {
+        return (long) (pages.size() + unrequestedPages) * pageSize;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014-2018 TweetWallFX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tweetwallfx.tweet.impl.twitter4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import twitter4j.RateLimitStatus;
+import twitter4j.TwitterException;
+import twitter4j.TwitterResponse;
+import static org.tweetwall.util.ToString.*;
+
+/**
+ * Scheduler all REST calls to twitter go through.
+ * <p>
+ * The scheduler tracks the remaining calls and the reset time of the rate
+ * limit window per endpoint as reported by the responses. Calls are paced so
+ * that the remaining calls are spread evenly across the rest of the window.
+ * A call that would have to wait longer than the configured maximum - e.g.
+ * because the limit has been reached - is rejected immediately with a
+ * {@link RejectedException} instead of being sent to twitter.
+ */
+final class RateLimitScheduler {
+
+    static final String SEARCH = "/search/tweets";
+    static final String LOOKUP = "/statuses/lookup";
+    static final String SHOW_STATUS = "/statuses/show/:id";
+    private static final Logger LOGGER = LogManager.getLogger(RateLimitScheduler.class);
+
+    private final Map<String, Budget> budgets = new ConcurrentHashMap<>();
+    private final long maxWaitMillis;
+    private final Clock clock;
+
+    RateLimitScheduler(final long maxWait, final TimeUnit unit) {
+        this(maxWait, unit, Clock.SYSTEM);
+    }
+
+    RateLimitScheduler(final long maxWait, final TimeUnit unit, final Clock clock) {
+        this.maxWaitMillis = unit.toMillis(Math.max(0, maxWait));
+        this.clock = clock;
+    }
+
+    /**
+     * Executes the {@code call} to the {@code endpoint} once the rate limit of
+     * the endpoint permits it.
+     *
+     * @param <T> the type of the response
+     *
+     * @param endpoint the endpoint the call is made to
+     *
+     * @param call the call to execute
+     *
+     * @return the response of the call
+     *
+     * @throws TwitterException if the call fails or is rejected
+     */
+    <T extends TwitterResponse> T execute(final String endpoint, final TwitterCall<T> call) throws TwitterException {
+        final Budget budget = budgets.computeIfAbsent(endpoint, Budget::new);
+        final long waitMillis = budget.reserve(clock.currentTimeMillis(), maxWaitMillis);
+
+        if (waitMillis < 0) {
+            throw new RejectedException("Rate limit of " + endpoint + " exhausted, rejecting call (" + budget + ")");
+        } else if (waitMillis > 0) {
+            LOGGER.debug("Delaying call to {} by {}ms", endpoint, waitMillis);
+
+            try {
+                clock.sleep(waitMillis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new TwitterException("Interrupted while waiting for rate limit of " + endpoint, ex);
+            }
+        }
+
+        try {
+            final T response = call.call();
+
+            if (null != response) {
+                budget.update(response.getRateLimitStatus());
+                LOGGER.debug("RateLimit: {}", budget);
+            }
+
+            return response;
+        } catch (TwitterException ex) {
+            budget.update(ex.getRateLimitStatus());
+
+            if (ex.exceededRateLimitation()) {
+                budget.exhaust(clock.currentTimeMillis(), ex.getRetryAfter());
+            }
+
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the number of calls to the {@code endpoint} known to be left in
+     * the current rate limit window. {@link Integer#MAX_VALUE} is returned if
+     * nothing is known about the current window.
+     *
+     * @param endpoint the endpoint
+     *
+     * @return the number of calls known to be left
+     */
+    int getRemaining(final String endpoint) {
+        final Budget budget = budgets.get(endpoint);
+
+        return null == budget
+                ? Integer.MAX_VALUE
+                : budget.getRemaining(clock.currentTimeMillis());
+    }
+
+    @Override
+    public String toString() {
+        return createToString(this, map(
+                "maxWaitMillis", maxWaitMillis,
+                "budgets", budgets.values()
+        ));
+    }
+
+    /**
+     * A REST call to twitter.
+     *
+     * @param <T> the type of the response
+     */
+    @FunctionalInterface
+    interface TwitterCall<T> {
+
+        T call() throws TwitterException;
+    }
+
+    /**
+     * Source of the current time the scheduler paces calls by.
+     */
+    interface Clock {
+
+        /**
+         * The system clock.
+         */
+        Clock SYSTEM = new Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return System.currentTimeMillis();
+            }
+
+            @Override
+            public void sleep(final long millis) throws InterruptedException {
+                Thread.sleep(millis);
+            }
+        };
+
+        /**
+         * Returns the current time in milliseconds since the epoch.
+         *
+         * @return the current time in milliseconds
+         */
+        long currentTimeMillis();
+
+        /**
+         * Waits for {@code millis} milliseconds to pass.
+         *
+         * @param millis the milliseconds to wait
+         *
+         * @throws InterruptedException if interrupted while waiting
+         */
+        void sleep(long millis) throws InterruptedException;
+    }
+
+    /**
+     * Signals that a call has been rejected without being sent to twitter.
+     */
+    static final class RejectedException extends TwitterException {
+
+        private static final long serialVersionUID = 1L;
+
+        private RejectedException(final String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Rate limit state of one endpoint.
+     */
+    private static final class Budget {
+
+        private final String endpoint;
+        private int limit = -1;
+        private int remaining = -1;
+        private long resetAtMillis;
+        private long nextSlotMillis;
+
+        private Budget(final String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        /**
+         * Reserves a call and returns the milliseconds to wait before making
+         * it or {@code -1} if the call is rejected.
+         */
+        private synchronized long reserve(final long now, final long maxWaitMillis) {
+            if (resetAtMillis <= now) {
+                // window passed or nothing known yet
+                remaining = -1;
+                nextSlotMillis = now;
+            }
+
+            final long slotMillis = 0 == remaining
+                    ? resetAtMillis
+                    : Math.max(now, nextSlotMillis);
+            final long waitMillis = slotMillis - now;
+
+            if (waitMillis > maxWaitMillis) {
+                return -1;
+            }
+
+            if (remaining < 0) {
+                // budget unknown: calls go out from the next slot on until a response reports it
+                return waitMillis;
+            } else if (0 == remaining) {
+                // the next window starts at the reserved slot, later calls queue behind it
+                remaining = -1;
+                nextSlotMillis = resetAtMillis;
+            } else {
+                nextSlotMillis = slotMillis + (resetAtMillis - slotMillis) / remaining;
+                remaining--;
+            }
+
+            return waitMillis;
+        }
+
+        private synchronized int getRemaining(final long now) {
+            if (resetAtMillis <= now) {
+                return Integer.MAX_VALUE;
+            }
+
+            // unknown before the reset only while calls are queued behind it
+            return Math.max(0, remaining);
+        }
+
+        private synchronized void update(final RateLimitStatus rateLimitStatus) {
+            if (null == rateLimitStatus) {
+                return;
+            }
+
+            final long reportedResetAtMillis = TimeUnit.SECONDS.toMillis(rateLimitStatus.getResetTimeInSeconds());
+
+            if (reportedResetAtMillis == resetAtMillis && remaining >= 0) {
+                // calls reserved concurrently may not be reflected yet
+                remaining = Math.min(remaining, rateLimitStatus.getRemaining());
+            } else if (reportedResetAtMillis >= resetAtMillis) {
+                remaining = rateLimitStatus.getRemaining();
+                resetAtMillis = reportedResetAtMillis;
+            }
+
+            limit = rateLimitStatus.getLimit();
+        }
+
+        private synchronized void exhaust(final long now, final int retryAfterSeconds) {
+            remaining = 0;
+
+            if (retryAfterSeconds > 0) {
+                resetAtMillis = Math.max(resetAtMillis, now + TimeUnit.SECONDS.toMillis(retryAfterSeconds));
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            return createToString(this, map(
+                    "endpoint", endpoint,
+                    "limit", limit,
+                    "remaining", remaining,
+                    "resetAtMillis", resetAtMillis
+            ));
+        }
+    }
+}
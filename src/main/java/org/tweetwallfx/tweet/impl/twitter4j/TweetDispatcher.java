@@ -0,0 +1,237 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014-2018 TweetWallFX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tweetwallfx.tweet.impl.twitter4j;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.tweetwallfx.tweet.api.ConsumerLag;
+import org.tweetwallfx.tweet.api.OverflowPolicy;
+import org.tweetwallfx.tweet.api.Tweet;
+import static org.tweetwall.util.ToString.*;
+
+/**
+ * Single producer ring buffer fanning out Tweets to consumers that each run on
+ * their own thread and keep their own read sequence.
+ * <p>
+ * {@link #publish(Tweet)} must only ever be called from a single thread. When
+ * the slowest consumer is a full buffer behind, the configured
+ * {@link OverflowPolicy} decides whether the producer waits, the new Tweet is
+ * discarded or the oldest Tweet is overwritten.
+ */
+final class TweetDispatcher {
+
+    private static final Logger LOGGER = LogManager.getLogger(TweetDispatcher.class);
+    private static final long CONSUMER_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long PRODUCER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final AtomicReferenceArray<Tweet> ringBuffer;
+    /**
+     * Sequence of the Tweet held by each slot of the ring buffer or
+     * {@code -1} while the slot is being written.
+     */
+    private final AtomicLongArray slotSequences;
+    private final int mask;
+    private final OverflowPolicy overflowPolicy;
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private final List<ConsumerSequence> consumerSequences = new CopyOnWriteArrayList<>();
+    private volatile boolean running = true;
+
+    TweetDispatcher(final int bufferSize, final OverflowPolicy overflowPolicy) {
+        final int capacity = Integer.highestOneBit(Math.max(1, bufferSize - 1)) << 1;
+        this.ringBuffer = new AtomicReferenceArray<>(capacity);
+        this.slotSequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.overflowPolicy = null == overflowPolicy ? OverflowPolicy.DROP_OLDEST : overflowPolicy;
+    }
+
+    void addConsumer(final Consumer<Tweet> consumer) {
+        final ConsumerSequence consumerSequence = new ConsumerSequence(consumer, cursor.get() + 1);
+        consumerSequences.add(consumerSequence);
+        consumerSequence.thread.start();
+    }
+
+    void publish(final Tweet tweet) {
+        final long next = cursor.get() + 1;
+        final long wrapPoint = next - ringBuffer.length();
+
+        boolean discard = false;
+
+        for (final ConsumerSequence consumerSequence : consumerSequences) {
+            if (!awaitCapacity(consumerSequence, wrapPoint)) {
+                // discarded for all consumers, but only charged to the ones a full buffer behind
+                consumerSequence.dropped.incrementAndGet();
+                discard = true;
+            }
+        }
+
+        if (discard) {
+            return;
+        }
+
+        final int index = (int) next & mask;
+        slotSequences.set(index, -1);
+        ringBuffer.set(index, tweet);
+        slotSequences.set(index, next);
+        cursor.set(next);
+        consumerSequences.forEach(consumerSequence -> LockSupport.unpark(consumerSequence.thread));
+    }
+
+    private boolean awaitCapacity(final ConsumerSequence consumerSequence, final long wrapPoint) {
+        while (running && consumerSequence.sequence.get() <= wrapPoint) {
+            switch (overflowPolicy) {
+                case BLOCK:
+                    LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+                    break;
+                case DROP_NEWEST:
+                    return false;
+                default:
+                    // the consumer notices it has been overrun and skips ahead
+                    return true;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns how far each consumer lags behind the published Tweets.
+     *
+     * @return the lag of each consumer in the order the consumers were added
+     */
+    List<ConsumerLag> getConsumerLags() {
+        return consumerSequences.stream()
+                .map(ConsumerSequence::toConsumerLag)
+                .collect(Collectors.toList());
+    }
+
+    void shutdown() {
+        running = false;
+        consumerSequences.forEach(consumerSequence -> LockSupport.unpark(consumerSequence.thread));
+    }
+
+    @Override
+    public String toString() {
+        return createToString(this, map(
+                "capacity", ringBuffer.length(),
+                "overflowPolicy", overflowPolicy,
+                "cursor", cursor.get(),
+                "consumers", consumerSequences.stream().map(ConsumerSequence::toString).collect(Collectors.toList())
+        ));
+    }
+
+    /**
+     * Read sequence and worker thread of one consumer.
+     */
+    private final class ConsumerSequence implements Runnable {
+
+        private final Consumer<Tweet> consumer;
+        private final AtomicLong sequence;
+        private final AtomicLong dropped = new AtomicLong();
+        private final Thread thread;
+
+        private ConsumerSequence(final Consumer<Tweet> consumer, final long sequence) {
+            this.consumer = consumer;
+            this.sequence = new AtomicLong(sequence);
+            this.thread = new Thread(this, "TweetStream-Consumer-" + THREAD_COUNTER.incrementAndGet());
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Returns the number of published Tweets this consumer has not yet
+         * read.
+         *
+         * @return the number of published Tweets this consumer has not yet
+         * read
+         */
+        long getLag() {
+            return Math.max(0, cursor.get() + 1 - sequence.get());
+        }
+
+        /**
+         * Returns the number of Tweets this consumer missed because it was a
+         * full buffer behind, either as they were discarded or as they were
+         * overwritten before being read.
+         *
+         * @return the number of Tweets this consumer missed
+         */
+        long getDropped() {
+            return dropped.get();
+        }
+
+        private ConsumerLag toConsumerLag() {
+            return new ConsumerLag(consumer, getLag(), getDropped());
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                final long current = sequence.get();
+                final long available = cursor.get();
+
+                if (current > available) {
+                    LockSupport.parkNanos(this, CONSUMER_PARK_NANOS);
+                } else if (available - current >= ringBuffer.length()) {
+                    // overrun by the producer: skip the overwritten Tweets
+                    final long oldestAvailable = available - ringBuffer.length() + 1;
+                    dropped.addAndGet(oldestAvailable - current);
+                    sequence.set(oldestAvailable);
+                } else {
+                    final int index = (int) current & mask;
+                    final Tweet tweet = ringBuffer.get(index);
+
+                    // the slot still holds this sequence only if it was not overwritten while reading it
+                    if (slotSequences.get(index) == current) {
+                        sequence.set(current + 1);
+
+                        try {
+                            consumer.accept(tweet);
+                        } catch (RuntimeException ex) {
+                            LOGGER.error("Error dispatching tweet to " + consumer, ex);
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return createToString(this, map(
+                    "consumer", consumer,
+                    "lag", getLag(),
+                    "dropped", getDropped()
+            ));
+        }
+    }
+}
@@ -0,0 +1,477 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 TweetWallFX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tweetwallfx.tweet.impl.twitter4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import twitter4j.Status;
+import static org.tweetwall.util.ToString.*;
+
+/**
+ * Append-only journal of the Statuses received from twitter, allowing the most
+ * recent ones to be restored after a restart without contacting twitter.
+ * <p>
+ * The journal is a sequence of segment files named after their sequence
+ * number. Each record consists of
+ * <ol>
+ * <li>the length of the serialized Status (4 bytes),</li>
+ * <li>the CRC-32 of the remainder of the record (4 bytes),</li>
+ * <li>the time the record was appended in milliseconds since the epoch (8
+ * bytes) and</li>
+ * <li>the Java serialized Status.</li>
+ * </ol>
+ * Once a segment exceeds the configured size a new one is started and the
+ * oldest segments beyond the configured number are deleted. Reading a segment
+ * stops at the first record that is truncated or fails its CRC check, which is
+ * where a crash interrupted the last append. Such a torn tail is cut off
+ * before appending to the segment again.
+ * <p>
+ * The directory is locked while the journal is open, so that only one
+ * journal at a time appends to it. As Statuses are deserialized when
+ * replaying, the directory and the segments are created accessible by their
+ * owner only where the file system supports POSIX permissions, and an existing
+ * directory is refused if it is not owned by the current user or writable by
+ * others. In addition only twitter4j classes and a few JDK value classes are
+ * accepted when deserializing.
+ */
+final class TweetJournal implements AutoCloseable {
+
+    private static final Logger LOGGER = LogManager.getLogger(TweetJournal.class);
+    private static final String PREFIX = "tweets-";
+    private static final String SUFFIX = ".journal";
+    private static final int HEADER_BYTES = 4 + 4 + 8;
+    private static final int MAX_RECORD_BYTES = 1024 * 1024;
+    private static final int MAX_RECENT_IDS = 10_000;
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final int maxSegments;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    /**
+     * Ids of the Statuses appended or replayed most recently, so that Statuses
+     * returned by repeated searches are only appended once.
+     */
+    private final Map<Long, Boolean> recentIds = new LinkedHashMap<Long, Boolean>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Long, Boolean> eldest) {
+            return size() > MAX_RECENT_IDS;
+        }
+    };
+    private FileChannel segment;
+    private long segmentNumber;
+    private long appended;
+
+    /**
+     * Opens the journal in {@code directory}, creating the directory if
+     * needed.
+     *
+     * @param directory the directory holding the segments
+     *
+     * @param segmentBytes the size after which a new segment is started
+     *
+     * @param maxSegments the maximum number of segments kept
+     *
+     * @throws IOException if the directory cannot be prepared or is in use by
+     * another journal
+     */
+    TweetJournal(final Path directory, final long segmentBytes, final int maxSegments) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = Math.max(1, maxSegments);
+
+        prepareDirectory(directory);
+        this.lockChannel = FileChannel.open(directory.resolve(".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+        try {
+            this.lock = lockChannel.tryLock();
+        } catch (IOException | OverlappingFileLockException ex) {
+            lockChannel.close();
+            throw new IOException("Failed to lock journal directory " + directory, ex);
+        }
+
+        if (null == lock) {
+            lockChannel.close();
+            throw new IOException("Journal directory " + directory + " is in use");
+        }
+
+        final List<Path> segments = listSegments();
+
+        if (segments.isEmpty()) {
+            openSegment(0);
+        } else {
+            final Path last = segments.get(segments.size() - 1);
+            openSegment(parseSegmentNumber(last));
+
+            final long valid = validLength(last);
+
+            if (valid < segment.size()) {
+                LOGGER.warn("Truncating torn tail of journal segment {} from {} to {} bytes", last, segment.size(), valid);
+                segment.truncate(valid);
+            }
+
+            segment.position(valid);
+        }
+    }
+
+    /**
+     * Appends the {@code status} unless it is one of the Statuses appended or
+     * replayed most recently. Failures are logged instead of being thrown, so
+     * that receiving Tweets is never interrupted by the journal.
+     *
+     * @param status the Status to append
+     */
+    synchronized void append(final Status status) {
+        if (null == segment || null != recentIds.put(status.getId(), Boolean.TRUE)) {
+            return;
+        }
+
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+
+            try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(status);
+            }
+
+            final byte[] payload = bytes.toByteArray();
+
+            if (payload.length > MAX_RECORD_BYTES) {
+                LOGGER.warn("Not journaling status {} of {} bytes", status.getId(), payload.length);
+                return;
+            }
+
+            final ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+            record.putInt(payload.length)
+                    .putInt(0)
+                    .putLong(System.currentTimeMillis())
+                    .put(payload);
+            record.putInt(4, crc(record, 8, record.capacity()));
+            record.flip();
+
+            while (record.hasRemaining()) {
+                segment.write(record);
+            }
+
+            appended++;
+
+            if (segment.position() >= segmentBytes) {
+                segment.force(false);
+                segment.close();
+                openSegment(segmentNumber + 1);
+                deleteOldSegments();
+            }
+        } catch (IOException ex) {
+            LOGGER.error("Error journaling status " + status.getId(), ex);
+        }
+    }
+
+    /**
+     * Appends each of the {@code statuses}.
+     *
+     * @param statuses the Statuses to append
+     *
+     * @see #append(Status)
+     */
+    void appendAll(final List<Status> statuses) {
+        statuses.forEach(this::append);
+    }
+
+    /**
+     * Reads the Statuses appended within the last {@code windowMillis}
+     * milliseconds. Only segments modified within the window are read, each
+     * by mapping it into memory.
+     *
+     * @param windowMillis the number of milliseconds to read Statuses of
+     *
+     * @return the Statuses read, most recent first
+     */
+    synchronized List<Status> replay(final long windowMillis) {
+        final long cutoff = System.currentTimeMillis() - windowMillis;
+        final Map<Long, Status> statuses = new LinkedHashMap<>();
+
+        try {
+            for (final Path path : listSegments()) {
+                if (Files.getLastModifiedTime(path).toMillis() < cutoff) {
+                    continue;
+                }
+
+                try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+                    for (int position = 0; isValidRecord(buffer, position); position += HEADER_BYTES + buffer.getInt(position)) {
+                        if (buffer.getLong(position + 8) >= cutoff) {
+                            final byte[] payload = new byte[buffer.getInt(position)];
+                            ((ByteBuffer) buffer.duplicate().position(position + HEADER_BYTES)).get(payload);
+                            final Status status = deserialize(payload);
+
+                            if (null != status) {
+                                statuses.put(status.getId(), status);
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            LOGGER.error("Error replaying journal " + directory, ex);
+        }
+
+        statuses.keySet().forEach(id -> recentIds.put(id, Boolean.TRUE));
+        return statuses.values().stream()
+                .sorted(Comparator.comparingLong(Status::getId).reversed())
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            if (null != segment) {
+                segment.force(false);
+                segment.close();
+                segment = null;
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("Error closing journal segment", ex);
+        }
+
+        try {
+            lock.release();
+            lockChannel.close();
+        } catch (IOException ex) {
+            LOGGER.warn("Error unlocking journal directory " + directory, ex);
+        }
+    }
+
+    private void openSegment(final long number) throws IOException {
+        final Set<StandardOpenOption> options = EnumSet.of(StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        segmentNumber = number;
+        segment = POSIX
+                ? FileChannel.open(directory.resolve(String.format("%s%016d%s", PREFIX, number, SUFFIX)), options,
+                        PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")))
+                : FileChannel.open(directory.resolve(String.format("%s%016d%s", PREFIX, number, SUFFIX)), options);
+        segment.position(segment.size());
+    }
+
+    /**
+     * Creates the {@code directory} accessible by its owner only or verifies
+     * that an existing one cannot be written by anybody but the current user.
+     */
+    private static void prepareDirectory(final Path directory) throws IOException {
+        if (!POSIX) {
+            Files.createDirectories(directory);
+            return;
+        }
+
+        if (Files.notExists(directory)) {
+            Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        }
+
+        final UserPrincipal currentUser = directory.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        final Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(directory);
+
+        if (!currentUser.equals(Files.getOwner(directory))
+                || permissions.contains(PosixFilePermission.GROUP_WRITE)
+                || permissions.contains(PosixFilePermission.OTHERS_WRITE)) {
+            throw new IOException("Journal directory " + directory + " must be owned and only be writable by " + currentUser.getName());
+        }
+    }
+
+    private void deleteOldSegments() throws IOException {
+        final List<Path> segments = listSegments();
+
+        for (int i = 0; i < segments.size() - maxSegments; i++) {
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    /**
+     * Returns the segments in the order they were written.
+     */
+    private List<Path> listSegments() throws IOException {
+        try (final Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                final String name = path.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            })
+                    .sorted(Comparator.comparingLong(TweetJournal::parseSegmentNumber))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long parseSegmentNumber(final Path path) {
+        final String name = path.getFileName().toString();
+
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the length of the leading part of the segment consisting of
+     * valid records.
+     */
+    private static long validLength(final Path path) throws IOException {
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int position = 0;
+
+            while (isValidRecord(buffer, position)) {
+                position += HEADER_BYTES + buffer.getInt(position);
+            }
+
+            return position;
+        }
+    }
+
+    private static boolean isValidRecord(final ByteBuffer buffer, final int position) {
+        if (buffer.limit() - position < HEADER_BYTES) {
+            return false;
+        }
+
+        final int length = buffer.getInt(position);
+
+        return length > 0
+                && length <= MAX_RECORD_BYTES
+                && length <= buffer.limit() - position - HEADER_BYTES
+                && buffer.getInt(position + 4) == crc(buffer, position + 8, position + HEADER_BYTES + length);
+    }
+
+    private static int crc(final ByteBuffer buffer, final int from, final int to) {
+        final CRC32 crc = new CRC32();
+        final ByteBuffer range = buffer.duplicate();
+        range.limit(to).position(from);
+        crc.update(range);
+        return (int) crc.getValue();
+    }
+
+    private static Status deserialize(final byte[] payload) {
+        try (final ObjectInputStream in = new StatusInputStream(new ByteArrayInputStream(payload))) {
+            return (Status) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException ex) {
+            // e.g. written by an incompatible version of twitter4j
+            LOGGER.warn("Skipping unreadable journal record", ex);
+            return null;
+        }
+    }
+
+    /**
+     * ObjectInputStream resolving only the classes a serialized Status
+     * consists of: twitter4j classes, JDK value classes and arrays thereof.
+     */
+    private static final class StatusInputStream extends ObjectInputStream {
+
+        private static final Set<String> ALLOWED_JDK_CLASSES = new HashSet<>(Arrays.asList(
+                "java.lang.Boolean",
+                "java.lang.Byte",
+                "java.lang.Character",
+                "java.lang.Double",
+                "java.lang.Enum",
+                "java.lang.Float",
+                "java.lang.Integer",
+                "java.lang.Long",
+                "java.lang.Number",
+                "java.lang.Short",
+                "java.lang.String",
+                "java.util.Date",
+                "java.util.HashMap"));
+
+        private StatusInputStream(final InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            String name = desc.getName();
+
+            while (name.startsWith("[")) {
+                name = name.substring(1);
+            }
+
+            if (name.startsWith("L") && name.endsWith(";")) {
+                name = name.substring(1, name.length() - 1);
+            } else if (1 == name.length()) {
+                // array of a primitive type
+                return super.resolveClass(desc);
+            }
+
+            if (!name.startsWith("twitter4j.") && !ALLOWED_JDK_CLASSES.contains(name)) {
+                throw new InvalidClassException(desc.getName(), "not allowed in a journaled Status");
+            }
+
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(final String[] interfaces) throws IOException {
+            throw new InvalidClassException("proxy", "not allowed in a journaled Status");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return createToString(this, map(
+                "directory", directory.toString(),
+                "segmentBytes", segmentBytes,
+                "maxSegments", maxSegments,
+                "segmentNumber", segmentNumber,
+                "appended", appended
+        ));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014-2018 TweetWallFX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tweetwallfx.tweet.impl.twitter4j;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import twitter4j.Twitter;
+import twitter4j.TwitterException;
+import twitter4j.TwitterFactory;
+import twitter4j.TwitterResponse;
+import twitter4j.conf.Configuration;
+import static org.tweetwall.util.ToString.*;
+
+/**
+ * Pool of long-lived Twitter clients, one per configured OAuth credentials,
+ * each with its own {@link RateLimitScheduler}.
+ * <p>
+ * A REST call is made with the client having the most calls left for the
+ * endpoint. If that client rejects the call or twitter reports its rate limit
+ * as exceeded, the call is retried with the next client. Thereby the
+ * aggregated throughput scales with the number of credentials while exhausted
+ * credentials are skipped until their rate limit window resets.
+ */
+final class TwitterClientPool {
+
+    private static final Logger LOGGER = LogManager.getLogger(TwitterClientPool.class);
+
+    private final List<Client> clients;
+
+    TwitterClientPool(final List<Configuration> configurations, final long maxWait, final TimeUnit unit) {
+        this.clients = configurations.stream()
+                .map(configuration -> new Client(
+                        new TwitterFactory(configuration).getInstance(),
+                        new RateLimitScheduler(maxWait, unit)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Executes the {@code call} to the {@code endpoint} with the client having
+     * the most calls left for the endpoint.
+     *
+     * @param <T> the type of the response
+     *
+     * @param endpoint the endpoint the call is made to
+     *
+     * @param call the call to execute
+     *
+     * @return the response of the call
+     *
+     * @throws TwitterException if the call fails or is rejected by all clients
+     */
+    <T extends TwitterResponse> T execute(final String endpoint, final ClientCall<T> call) throws TwitterException {
+        final List<Client> candidates = clients.stream()
+                .sorted(Comparator.comparingInt((Client client) -> client.scheduler.getRemaining(endpoint)).reversed())
+                .collect(Collectors.toList());
+        TwitterException lastException = new TwitterException("No Twitter client configured");
+
+        for (final Client client : candidates) {
+            try {
+                return client.scheduler.execute(endpoint, () -> call.call(client.twitter));
+            } catch (TwitterException ex) {
+                if (!(ex instanceof RateLimitScheduler.RejectedException) && !ex.exceededRateLimitation()) {
+                    throw ex;
+                }
+
+                LOGGER.debug("Rate limit of {} reached for a client, trying next", endpoint);
+                lastException = ex;
+            }
+        }
+
+        throw lastException;
+    }
+
+    @Override
+    public String toString() {
+        return createToString(this, map(
+                "schedulers", clients.stream().map(client -> client.scheduler).collect(Collectors.toList())
+        ));
+    }
+
+    /**
+     * A REST call to twitter made with a client of the pool.
+     *
+     * @param <T> the type of the response
+     */
+    @FunctionalInterface
+    interface ClientCall<T> {
+
+        T call(Twitter twitter) throws TwitterException;
+    }
+
+    private static final class Client {
+
+        private final Twitter twitter;
+        private final RateLimitScheduler scheduler;
+
+        private Client(final Twitter twitter, final RateLimitScheduler scheduler) {
+            this.twitter = twitter;
+            this.scheduler = scheduler;
+        }
+    }
+}
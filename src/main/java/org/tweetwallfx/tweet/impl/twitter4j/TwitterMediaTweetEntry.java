@@ -23,14 +23,34 @@
  */
 package org.tweetwallfx.tweet.impl.twitter4j;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.Set;
 import org.tweetwallfx.tweet.api.entry.MediaTweetEntry;
 import org.tweetwallfx.tweet.api.entry.MediaTweetEntryType;
 import twitter4j.MediaEntity;
 
 final class TwitterMediaTweetEntry extends BaseTwitterTweetEntry<MediaEntity> implements MediaTweetEntry {
 
+    private static final Map<Integer, String> SIZE_NAMES;
+
+    static {
+        final Map<Integer, String> sizeNames = new HashMap<>();
+        sizeNames.put(Size.THUMB, "thumb");
+        sizeNames.put(Size.SMALL, "small");
+        sizeNames.put(Size.MEDIUM, "medium");
+        sizeNames.put(Size.LARGE, "large");
+        SIZE_NAMES = Collections.unmodifiableMap(sizeNames);
+    }
+
+    private SizeTable sizes;
+
     TwitterMediaTweetEntry(final MediaEntity mediaEntity) {
         super(mediaEntity);
     }
@@ -45,22 +65,92 @@ final class TwitterMediaTweetEntry extends BaseTwitterTweetEntry<MediaEntity> im
         return getT().getMediaURL();
     }
 
+    @Override
+    public String getMediaUrl(final Integer size) {
+        final String name = SIZE_NAMES.get(size);
+
+        return null == name
+                ? getMediaUrl()
+                : getMediaUrl() + ':' + name;
+    }
+
     @Override
     public Map<Integer, Size> getSizes() {
-        final Map<Integer, Size> map = new TreeMap<>();
+        SizeTable result = sizes;
 
-        getT().getSizes().entrySet().stream().forEach(e -> map.put(
-                e.getKey(),
-                MediaTweetEntry.createSize(
-                        e.getValue().getWidth(),
-                        e.getValue().getHeight(),
-                        e.getValue().getResize())));
+        // racing initializations produce equal immutable tables
+        if (null == result) {
+            result = new SizeTable(getT().getSizes());
+            sizes = result;
+        }
 
-        return map;
+        return result;
     }
 
     @Override
     public MediaTweetEntryType getType() {
         return MediaTweetEntryType.valueOf(getT().getType());
     }
+
+    /**
+     * Immutable map of the size variations, stored in a slot per
+     * {@link Size#THUMB}..{@link Size#LARGE} and iterated in key order.
+     */
+    private static final class SizeTable extends AbstractMap<Integer, Size> {
+
+        private final Size[] slots = new Size[SIZE_NAMES.size()];
+        private final Set<Map.Entry<Integer, Size>> entrySet;
+
+        private SizeTable(final Map<Integer, MediaEntity.Size> mediaSizes) {
+            mediaSizes.forEach((key, size) -> {
+                // twitter only ever reports the four documented variations
+                if (null != key && key >= 0 && key < slots.length) {
+                    slots[key] = MediaTweetEntry.createSize(size.getWidth(), size.getHeight(), size.getResize());
+                }
+            });
+
+            final List<Map.Entry<Integer, Size>> entries = new ArrayList<>(slots.length);
+
+            for (int i = 0; i < slots.length; i++) {
+                if (null != slots[i]) {
+                    entries.add(new AbstractMap.SimpleImmutableEntry<>(i, slots[i]));
+                }
+            }
+
+            final List<Map.Entry<Integer, Size>> entryList = Collections.unmodifiableList(entries);
+            this.entrySet = new AbstractSet<Map.Entry<Integer, Size>>() {
+                @Override
+                public Iterator<Map.Entry<Integer, Size>> iterator() {
+                    return entryList.iterator();
+                }
+
+                @Override
+                public int size() {
+                    return entryList.size();
+                }
+            };
+        }
+
+        @Override
+        public Size get(final Object key) {
+            return key instanceof Integer && (Integer) key >= 0 && (Integer) key < slots.length
+                    ? slots[(Integer) key]
+                    : null;
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return null != get(key);
+        }
+
+        @Override
+        public int size() {
+            return entrySet.size();
+        }
+
+        @Override
+        public Set<Map.Entry<Integer, Size>> entrySet() {
+            return entrySet;
+        }
+    }
 }
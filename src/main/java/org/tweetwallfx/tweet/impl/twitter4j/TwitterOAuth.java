@@ -23,8 +23,13 @@
  */
 package org.tweetwallfx.tweet.impl.twitter4j;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.ws.rs.InternalServerErrorException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -61,33 +66,95 @@ import twitter4j.conf.ConfigurationBuilder;
 final class TwitterOAuth {
 
     private static final Logger LOGGER = LogManager.getLogger(TwitterOAuth.class);
-    private static Configuration configuration = null;
+    private static List<Configuration> configurations = null;
+    private static RuntimeException failure = null;
     private static final AtomicBoolean INITIATED = new AtomicBoolean(false);
 
     private TwitterOAuth() {
         // prevent instantiation
     }
 
+    /**
+     * Returns the Configuration of the first configured OAuth credentials.
+     *
+     * @return the Configuration of the first configured OAuth credentials
+     *
+     * @throws InternalServerErrorException if credentials are configured but
+     * none of them are valid
+     */
     public static Configuration getConfiguration() {
+        final List<Configuration> result = getConfigurations();
+
+        return result.isEmpty()
+                ? null
+                : result.get(0);
+    }
+
+    /**
+     * Returns the Configurations of all configured OAuth credentials, starting
+     * with {@link TwitterSettings#getOauth()} followed by
+     * {@link TwitterSettings#getOauths()}. Credentials failing verification
+     * are logged and left out.
+     *
+     * @return the Configurations of all valid configured OAuth credentials
+     *
+     * @throws InternalServerErrorException if credentials are configured but
+     * none of them are valid
+     */
+    public static List<Configuration> getConfigurations() {
         synchronized (TwitterOAuth.class) {
             if (INITIATED.compareAndSet(false, true)) {
-                configuration = createConfiguration();
+                try {
+                    configurations = createConfigurations();
+                } catch (RuntimeException ex) {
+                    failure = ex;
+                }
             }
         }
 
-        return configuration;
+        if (null != failure) {
+            throw failure;
+        }
+
+        return null == configurations
+                ? Collections.emptyList()
+                : configurations;
     }
 
-    private static Configuration createConfiguration() {
-        final org.tweetwallfx.config.Configuration tweetWallFxConfig = org.tweetwallfx.config.Configuration.getInstance();
+    private static List<Configuration> createConfigurations() {
         final TwitterSettings twitterSettings = org.tweetwallfx.config.Configuration.getInstance()
                 .getConfigTyped(TwitterSettings.CONFIG_KEY, TwitterSettings.class);
 
+        final List<TwitterSettings.OAuth> oauths = Stream.concat(
+                Stream.of(twitterSettings.getOauth()),
+                twitterSettings.getOauths().stream())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        final List<Configuration> result = new ArrayList<>(oauths.size());
+
+        for (int i = 0; i < oauths.size(); i++) {
+            try {
+                result.add(createConfiguration(twitterSettings, oauths.get(i)));
+            } catch (InternalServerErrorException ex) {
+                // the remaining credential sets may still be used
+                LOGGER.error("Dropping credential set #" + i + ": " + ex.getMessage());
+            }
+        }
+
+        if (result.isEmpty() && !oauths.isEmpty()) {
+            throw new InternalServerErrorException("No valid credentials");
+        }
+
+        return Collections.unmodifiableList(result);
+    }
+
+    private static Configuration createConfiguration(final TwitterSettings twitterSettings, final TwitterSettings.OAuth twitterOAuthSettings) {
+        final org.tweetwallfx.config.Configuration tweetWallFxConfig = org.tweetwallfx.config.Configuration.getInstance();
+
         ConfigurationBuilder builder = new ConfigurationBuilder();
         builder.setDebugEnabled(twitterSettings.isDebugEnabled());
         builder.setTweetModeExtended(twitterSettings.isExtendedMode());
 
-        TwitterSettings.OAuth twitterOAuthSettings = twitterSettings.getOauth();
         builder.setOAuthConsumerKey(twitterOAuthSettings.getConsumerKey());
         builder.setOAuthConsumerSecret(twitterOAuthSettings.getConsumerSecret());
         builder.setOAuthAccessToken(twitterOAuthSettings.getAccessToken());
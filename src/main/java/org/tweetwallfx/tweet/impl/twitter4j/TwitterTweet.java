@@ -23,8 +23,10 @@
  */
 package org.tweetwallfx.tweet.impl.twitter4j;
 
-import java.util.Arrays;
 import java.util.Date;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import org.tweetwallfx.tweet.api.TextAnalysis;
 import org.tweetwallfx.tweet.api.Tweet;
 import org.tweetwallfx.tweet.api.User;
 import org.tweetwallfx.tweet.api.entry.HashtagTweetEntry;
@@ -32,12 +34,7 @@ import org.tweetwallfx.tweet.api.entry.MediaTweetEntry;
 import org.tweetwallfx.tweet.api.entry.SymbolTweetEntry;
 import org.tweetwallfx.tweet.api.entry.UrlTweetEntry;
 import org.tweetwallfx.tweet.api.entry.UserMentionTweetEntry;
-import twitter4j.HashtagEntity;
-import twitter4j.MediaEntity;
 import twitter4j.Status;
-import twitter4j.SymbolEntity;
-import twitter4j.URLEntity;
-import twitter4j.UserMentionEntity;
 
 final class TwitterTweet implements Tweet {
 
@@ -48,70 +45,46 @@ final class TwitterTweet implements Tweet {
     private static final UserMentionTweetEntry[] NIL_UMTES = new UserMentionTweetEntry[0];
     private final Status status;
     private final TwitterUser user;
-    private final HashtagTweetEntry[] hashtagTweetEntries;
-    private final MediaTweetEntry[] mediaTweetEntries;
-    private final SymbolTweetEntry[] symbolTweetEntries;
-    private final UrlTweetEntry[] urlTweetTweetEntries;
-    private final UserMentionTweetEntry[] userMentionTweetEntries;
-    private final TwitterTweet retweetedTweet;
+    private volatile HashtagTweetEntry[] hashtagTweetEntries;
+    private volatile MediaTweetEntry[] mediaTweetEntries;
+    private volatile SymbolTweetEntry[] symbolTweetEntries;
+    private volatile UrlTweetEntry[] urlTweetTweetEntries;
+    private volatile UserMentionTweetEntry[] userMentionTweetEntries;
+    private volatile TwitterTweet retweetedTweet;
+    private volatile TextAnalysis textAnalysis;
+    private volatile String displayEnhancedText;
 
     public TwitterTweet(final Status status) {
         this.status = status;
         this.user = new TwitterUser(status);
+    }
 
-        final HashtagEntity[] hashtagEntities = status.getHashtagEntities();
-
-        if (null == hashtagEntities) {
-            hashtagTweetEntries = NIL_HTES;
-        } else {
-            hashtagTweetEntries = Arrays.stream(hashtagEntities)
-                    .map(he -> new TwitterHashtagTweetEntry(he))
-                    .toArray(c -> new HashtagTweetEntry[c]);
-        }
-
-        final MediaEntity[] mediaEntities = status.getMediaEntities();
-
-        if (null == mediaEntities) {
-            mediaTweetEntries = NIL_MTES;
-        } else {
-            mediaTweetEntries = Arrays.stream(mediaEntities)
-                    .map(me -> new TwitterMediaTweetEntry(me))
-                    .toArray(c -> new MediaTweetEntry[c]);
-        }
-
-        final SymbolEntity[] symbolEntities = status.getSymbolEntities();
-
-        if (null == symbolEntities) {
-            symbolTweetEntries = NIL_STES;
-        } else {
-            symbolTweetEntries = Arrays.stream(symbolEntities)
-                    .map(se -> new TwitterSymbolTweetEntry(se))
-                    .toArray(c -> new SymbolTweetEntry[c]);
-        }
-
-        final URLEntity[] urlEntities = status.getURLEntities();
+    /**
+     * Returns the Status this Tweet wraps.
+     *
+     * @return the wrapped Status
+     */
+    Status getStatus() {
+        return status;
+    }
 
-        if (null == urlEntities) {
-            urlTweetTweetEntries = NIL_UTES;
-        } else {
-            urlTweetTweetEntries = Arrays.stream(urlEntities)
-                    .map(ue -> new TwitterUrlTweetEntry(ue))
-                    .toArray(c -> new UrlTweetEntry[c]);
+    /**
+     * Wraps the twitter4j entities into TweetEntries. The entries are
+     * materialized lazily on first access by the getters, which may race and
+     * create equal arrays more than once but always publish a complete array.
+     */
+    private static <E, T> T[] wrapEntities(final E[] entities, final Function<E, T> wrapper, final IntFunction<T[]> arrayCreator, final T[] empty) {
+        if (null == entities || 0 == entities.length) {
+            return empty;
         }
 
-        final UserMentionEntity[] userMentionEntities = status.getUserMentionEntities();
+        final T[] result = arrayCreator.apply(entities.length);
 
-        if (null == userMentionEntities) {
-            userMentionTweetEntries = NIL_UMTES;
-        } else {
-            userMentionTweetEntries = Arrays.stream(userMentionEntities)
-                    .map(ume -> new TwitterUserMentionTweetEntry(ume))
-                    .toArray(c -> new UserMentionTweetEntry[c]);
+        for (int i = 0; i < entities.length; i++) {
+            result[i] = wrapper.apply(entities[i]);
         }
 
-        retweetedTweet = isRetweet()
-                ? new TwitterTweet(status.getRetweetedStatus())
-                : null;
+        return result;
     }
 
     @Override
@@ -156,7 +129,14 @@ final class TwitterTweet implements Tweet {
 
     @Override
     public Tweet getRetweetedTweet() {
-        return retweetedTweet;
+        TwitterTweet result = retweetedTweet;
+
+        if (null == result && isRetweet()) {
+            result = new TwitterTweet(status.getRetweetedStatus());
+            retweetedTweet = result;
+        }
+
+        return result;
     }
 
     @Override
@@ -164,6 +144,30 @@ final class TwitterTweet implements Tweet {
         return status.getText();
     }
 
+    @Override
+    public TextAnalysis getTextAnalysis() {
+        TextAnalysis result = textAnalysis;
+
+        if (null == result) {
+            result = new TextAnalysis(getText());
+            textAnalysis = result;
+        }
+
+        return result;
+    }
+
+    @Override
+    public String getDisplayEnhancedText() {
+        String result = displayEnhancedText;
+
+        if (null == result) {
+            result = Tweet.super.getDisplayEnhancedText();
+            displayEnhancedText = result;
+        }
+
+        return result;
+    }
+
     @Override
     public User getUser() {
         return user;
@@ -181,27 +185,62 @@ final class TwitterTweet implements Tweet {
 
     @Override
     public HashtagTweetEntry[] getHashtagEntries() {
-        return hashtagTweetEntries;
+        HashtagTweetEntry[] result = hashtagTweetEntries;
+
+        if (null == result) {
+            result = wrapEntities(status.getHashtagEntities(), TwitterHashtagTweetEntry::new, HashtagTweetEntry[]::new, NIL_HTES);
+            hashtagTweetEntries = result;
+        }
+
+        return result;
     }
 
     @Override
     public MediaTweetEntry[] getMediaEntries() {
-        return mediaTweetEntries;
+        MediaTweetEntry[] result = mediaTweetEntries;
+
+        if (null == result) {
+            result = wrapEntities(status.getMediaEntities(), TwitterMediaTweetEntry::new, MediaTweetEntry[]::new, NIL_MTES);
+            mediaTweetEntries = result;
+        }
+
+        return result;
     }
 
     @Override
     public SymbolTweetEntry[] getSymbolEntries() {
-        return symbolTweetEntries;
+        SymbolTweetEntry[] result = symbolTweetEntries;
+
+        if (null == result) {
+            result = wrapEntities(status.getSymbolEntities(), TwitterSymbolTweetEntry::new, SymbolTweetEntry[]::new, NIL_STES);
+            symbolTweetEntries = result;
+        }
+
+        return result;
     }
 
     @Override
     public UrlTweetEntry[] getUrlEntries() {
-        return urlTweetTweetEntries;
+        UrlTweetEntry[] result = urlTweetTweetEntries;
+
+        if (null == result) {
+            result = wrapEntities(status.getURLEntities(), TwitterUrlTweetEntry::new, UrlTweetEntry[]::new, NIL_UTES);
+            urlTweetTweetEntries = result;
+        }
+
+        return result;
     }
 
     @Override
     public UserMentionTweetEntry[] getUserMentionEntries() {
-        return userMentionTweetEntries;
+        UserMentionTweetEntry[] result = userMentionTweetEntries;
+
+        if (null == result) {
+            result = wrapEntities(status.getUserMentionEntities(), TwitterUserMentionTweetEntry::new, UserMentionTweetEntry[]::new, NIL_UMTES);
+            userMentionTweetEntries = result;
+        }
+
+        return result;
     }
 
     private static class TwitterUser implements User {
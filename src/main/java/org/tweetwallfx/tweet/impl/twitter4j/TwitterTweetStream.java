@@ -24,13 +24,14 @@
 package org.tweetwallfx.tweet.impl.twitter4j;
 
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.tweetwallfx.tweet.api.ConsumerLag;
 import org.tweetwallfx.tweet.api.TweetFilterQuery;
 import org.tweetwallfx.tweet.api.Tweet;
 import org.tweetwallfx.tweet.api.TweetStream;
+import org.tweetwallfx.tweet.api.config.TwitterSettings;
 import twitter4j.FilterQuery;
 import twitter4j.Status;
 import twitter4j.StatusAdapter;
@@ -42,23 +43,37 @@ final class TwitterTweetStream implements TweetStream {
 
     private static final Logger log = LogManager.getLogger(TwitterTweetStream.class);
     
-    private final List<Consumer<Tweet>> tweetConsumerList = new CopyOnWriteArrayList<>();
+    private final TweetDispatcher dispatcher;
 
     private final TweetFilterQuery filterQuery;
+    private final TweetJournal journal;
     private TwitterStream twitterStream;
 
-    public TwitterTweetStream(TweetFilterQuery filterQuery) {
+    public TwitterTweetStream(TweetFilterQuery filterQuery, TweetJournal journal) {
         this.filterQuery = filterQuery;
+        this.journal = journal;
+        final TwitterSettings twitterSettings = org.tweetwallfx.config.Configuration.getInstance()
+                .getConfigTyped(TwitterSettings.CONFIG_KEY, TwitterSettings.class);
+        this.dispatcher = new TweetDispatcher(twitterSettings.getStreamBufferSize(), twitterSettings.getStreamOverflowPolicy());
+
+        if (null != journal) {
+            // journaled on a consumer thread, as the stream thread only publishes
+            dispatcher.addConsumer(tweet -> journal.append(((TwitterTweet) tweet).getStatus()));
+        }
+
         activateStream();
     }
     
     @Override
     public void onTweet(final Consumer<Tweet> tweetConsumer) {
-        synchronized (this) {
-            log.info("Adding tweetConsumer: " + tweetConsumer);
-            this.tweetConsumerList.add(tweetConsumer);
-            log.info("List of tweetConsumers is now: " + tweetConsumerList);
-        }
+        log.info("Adding tweetConsumer: " + tweetConsumer);
+        dispatcher.addConsumer(tweetConsumer);
+        log.info("Dispatcher is now: " + dispatcher);
+    }
+
+    @Override
+    public List<ConsumerLag> getConsumerLags() {
+        return dispatcher.getConsumerLags();
     }
 
     private void activateStream() {
@@ -70,11 +85,8 @@ final class TwitterTweetStream implements TweetStream {
 
             @Override
             public void onStatus(Status status) {
-                synchronized (TwitterTweetStream.this) {
-                    log.info("redispatching new received tweet to " + tweetConsumerList);
-                    TwitterTweet twitterTweet = new TwitterTweet(status);
-                    tweetConsumerList.stream().forEach(consumer -> consumer.accept(twitterTweet));
-                }
+                log.debug("publishing new received tweet to {}", dispatcher);
+                dispatcher.publish(new TwitterTweet(status));
             }
         });
         twitterStream.filter(getFilterQuery(filterQuery));
@@ -87,6 +99,9 @@ final class TwitterTweetStream implements TweetStream {
     }
     
     void shutdown() {
-        twitterStream.shutdown();
+        if (null != twitterStream) {
+            twitterStream.shutdown();
+        }
+        dispatcher.shutdown();
     }
 }
@@ -23,73 +23,338 @@
  */
 package org.tweetwallfx.tweet.impl.twitter4j;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.NoSuchElementException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import javax.ws.rs.InternalServerErrorException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.tweetwallfx.tweet.api.SearchCoalescer;
 import org.tweetwallfx.tweet.api.Tweet;
 import org.tweetwallfx.tweet.api.TweetFilterQuery;
 import org.tweetwallfx.tweet.api.TweetStream;
 import org.tweetwallfx.tweet.api.Tweeter;
 import org.tweetwallfx.tweet.api.TweetQuery;
+import org.tweetwallfx.tweet.api.config.TwitterSettings;
 import twitter4j.Query;
 import twitter4j.QueryResult;
 import twitter4j.Status;
-import twitter4j.Twitter;
 import twitter4j.TwitterException;
-import twitter4j.TwitterFactory;
+import twitter4j.TwitterResponse;
 import twitter4j.conf.Configuration;
 
 public class TwitterTweeter extends Tweeter {
 
     private static final Logger LOGGER = LogManager.getLogger(TwitterTweeter.class);
 
+    static final int DEFAULT_SEARCH_COUNT = 15;
+    private static final int MAX_LOOKUP_IDS = 100;
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
     private final List<TwitterTweetStream> streamCache = new ArrayList<>();
+    private final Map<TweetQuery, SearchWindow> searchWindows = new ConcurrentHashMap<>();
+    private volatile TwitterClientPool clientPool;
+    private volatile ExecutorService pageFetcher;
+    private volatile ExecutorService ownAsyncExecutor;
+    private volatile TweetJournal journal;
+    private volatile boolean journalOpened;
+    private final SearchCoalescer searchCoalescer = new SearchCoalescer(this::searchUncoalesced, getTwitterSettings().getSearchCacheTtl(), TimeUnit.MILLISECONDS);
 
     @Override
     public TweetStream createTweetStream(TweetFilterQuery tweetFilterQuery) {
-        TwitterTweetStream twitterTweetStream = new TwitterTweetStream(tweetFilterQuery);
+        TwitterTweetStream twitterTweetStream = new TwitterTweetStream(tweetFilterQuery, getJournal());
         streamCache.add(twitterTweetStream);
         return twitterTweetStream;
     }
 
     @Override
     public Tweet getTweet(long tweetId) {
-        final Twitter twitter = new TwitterFactory(TwitterOAuth.getConfiguration()).getInstance();
-
         try {
-            return new TwitterTweet(twitter.showStatus(tweetId));
+            return new TwitterTweet(execute(RateLimitScheduler.SHOW_STATUS, twitter -> twitter.showStatus(tweetId)));
         } catch (TwitterException ex) {
             throw new IllegalArgumentException("Error getting Status for " + tweetId, ex);
         }
     }
 
+    @Override
+    public Stream<Tweet> lookup(final LongStream tweetIds) {
+        final long[] ids = tweetIds.distinct().toArray();
+
+        if (0 == ids.length) {
+            // twitter rejects a lookup without ids, after charging it to the rate limit
+            return Stream.empty();
+        }
+
+        final Map<Long, Tweet> tweets = new HashMap<>(ids.length * 2);
+
+        if (ids.length <= MAX_LOOKUP_IDS) {
+            lookupBatch(ids).forEach(tweet -> tweets.put(tweet.getId(), tweet));
+        } else {
+            // batches are looked up in parallel
+            final List<CompletableFuture<List<Tweet>>> batches = new ArrayList<>();
+
+            for (int i = 0; i < ids.length; i += MAX_LOOKUP_IDS) {
+                final long[] batch = Arrays.copyOfRange(ids, i, Math.min(ids.length, i + MAX_LOOKUP_IDS));
+                batches.add(CompletableFuture.supplyAsync(() -> lookupBatch(batch), getPageFetcher()));
+            }
+
+            try {
+                batches.forEach(batch -> batch.join().forEach(tweet -> tweets.put(tweet.getId(), tweet)));
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+
+                throw ex;
+            }
+        }
+
+        return Arrays.stream(ids)
+                .mapToObj(tweets::get)
+                .filter(Objects::nonNull);
+    }
+
+    private List<Tweet> lookupBatch(final long[] ids) {
+        try {
+            return execute(RateLimitScheduler.LOOKUP, twitter -> twitter.lookup(ids)).stream()
+                    .map(TwitterTweet::new)
+                    .collect(Collectors.toList());
+        } catch (TwitterException ex) {
+            throw new IllegalArgumentException("Error getting Statuses for " + Arrays.toString(ids), ex);
+        }
+    }
+
     @Override
     public Stream<Tweet> search(final TweetQuery tweetQuery) {
-        final Twitter twitter = new TwitterFactory(TwitterOAuth.getConfiguration()).getInstance();
+        return searchCoalescer.search(tweetQuery);
+    }
+
+    private Stream<Tweet> searchUncoalesced(final TweetQuery tweetQuery) {
         final Query query = getQuery(tweetQuery);
         final QueryResult result;
 
         try {
-            result = twitter.search(query);
+            result = execute(RateLimitScheduler.SEARCH, twitter -> twitter.search(query));
         } catch (TwitterException ex) {
             LOGGER.error("Error getting QueryResult for " + query, ex);
             return Stream.empty();
         }
 
+        journal(result.getTweets());
         return result.getTweets().stream().map(TwitterTweet::new);
     }
 
+    @Override
+    public Stream<Tweet> searchIncremental(final TweetQuery tweetQuery) {
+        final SearchWindow window = searchWindows.computeIfAbsent(tweetQuery, SearchWindow::new);
+
+        synchronized (window) {
+            final Query query = getQuery(tweetQuery);
+
+            if (window.sinceId > 0) {
+                query.setSinceId(window.sinceId);
+            }
+
+            try {
+                final List<Status> statuses = execute(RateLimitScheduler.SEARCH, twitter -> twitter.search(query)).getTweets();
+                journal(statuses);
+                window.merge(statuses);
+            } catch (TwitterException ex) {
+                LOGGER.error("Error getting QueryResult for " + query, ex);
+            }
+
+            return window.tweets.stream();
+        }
+    }
+
     @Override
     public Stream<Tweet> searchPaged(final TweetQuery tweetQuery, int numberOfPages) {
-        final Query query = getQuery(tweetQuery);
-        final Iterable<Tweet> iterable = () -> new PagedIterator(this, query, numberOfPages);
-        return StreamSupport.stream(iterable.spliterator(), false);
+        final PrefetchingPager pager = new PrefetchingPager(this::searchPage, getPageFetcher(), getQuery(tweetQuery), numberOfPages, getTwitterSettings().getSearchReadAhead());
+        return StreamSupport.stream(pager, false).onClose(pager::cancel);
+    }
+
+    /**
+     * Fetches one page of a paged search.
+     *
+     * @return the page or {@code null} if no valid credentials are configured
+     */
+    private QueryResult searchPage(final Query query) {
+        final TwitterClientPool pool = getClientPool();
+
+        if (null == pool) {
+            return null;
+        }
+
+        try {
+            return pool.execute(RateLimitScheduler.SEARCH, twitter -> twitter.search(query));
+        } catch (TwitterException ex) {
+            throw new InternalServerErrorException(ex);
+        }
+    }
+
+    /**
+     * Returns the executor fetching the pages of paged searches and the
+     * batches of lookups in the background. The number of its threads is
+     * bounded by {@link TwitterSettings#getSearchThreads()}.
+     *
+     * @return the executor fetching the pages of paged searches and the
+     * batches of lookups
+     */
+    private ExecutorService getPageFetcher() {
+        ExecutorService result = pageFetcher;
+
+        if (null == result) {
+            synchronized (this) {
+                result = pageFetcher;
+
+                if (null == result) {
+                    final int threads = Math.max(1, getTwitterSettings().getSearchThreads());
+                    final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                        final Thread thread = new Thread(r, "TwitterTweeter-PageFetcher-" + THREAD_COUNTER.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    executor.allowCoreThreadTimeOut(true);
+                    result = executor;
+                    pageFetcher = result;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the Tweets received within the
+     * {@link TwitterSettings#getJournalReplayWindow() replay window} as
+     * recorded in the journal, including those received before a restart.
+     *
+     * @return the Tweets received recently, most recent first
+     */
+    @Override
+    public Stream<Tweet> replayJournal() {
+        final TweetJournal tweetJournal = getJournal();
+
+        if (null == tweetJournal) {
+            return Stream.empty();
+        }
+
+        return tweetJournal.replay(TimeUnit.SECONDS.toMillis(getTwitterSettings().getJournalReplayWindow())).stream()
+                .map(TwitterTweet::new);
+    }
+
+    /**
+     * Returns the journal recording the Statuses received by this Tweeter,
+     * opening it on first use.
+     *
+     * @return the journal or {@code null} if no journal is configured or it
+     * cannot be opened
+     */
+    private TweetJournal getJournal() {
+        if (!journalOpened) {
+            synchronized (this) {
+                if (!journalOpened) {
+                    final TwitterSettings twitterSettings = getTwitterSettings();
+
+                    if (null != twitterSettings.getJournalDirectory()) {
+                        try {
+                            journal = new TweetJournal(
+                                    Paths.get(twitterSettings.getJournalDirectory()),
+                                    twitterSettings.getJournalSegmentBytes(),
+                                    twitterSettings.getJournalMaxSegments());
+                        } catch (IOException ex) {
+                            LOGGER.error("Error opening journal, continuing without", ex);
+                        }
+                    }
+
+                    journalOpened = true;
+                }
+            }
+        }
+
+        return journal;
+    }
+
+    private void journal(final List<Status> statuses) {
+        final TweetJournal tweetJournal = getJournal();
+
+        if (null != tweetJournal) {
+            tweetJournal.appendAll(statuses);
+        }
+    }
+
+    @Override
+    protected Executor createAsyncExecutor() {
+        final ExecutorService executor = createAsyncExecutor(getTwitterSettings().getAsyncThreads());
+        ownAsyncExecutor = executor;
+        return executor;
+    }
+
+    private static TwitterSettings getTwitterSettings() {
+        return org.tweetwallfx.config.Configuration.getInstance()
+                .getConfigTyped(TwitterSettings.CONFIG_KEY, TwitterSettings.class);
+    }
+
+    /**
+     * Returns the pool of long-lived Twitter clients all REST calls of this
+     * Tweeter go through. Sharing the clients keeps their HTTP client state
+     * and allows the underlying keep-alive connections to be reused between
+     * calls. The number of idle keep-alive connections the JDK keeps per
+     * destination is set with the {@code -Dhttp.maxConnections} JVM option.
+     *
+     * @return the pool of Twitter clients or {@code null} if no configuration
+     * is available
+     */
+    TwitterClientPool getClientPool() {
+        TwitterClientPool result = clientPool;
+
+        if (null == result) {
+            synchronized (this) {
+                result = clientPool;
+
+                if (null == result) {
+                    final List<Configuration> configurations = TwitterOAuth.getConfigurations();
+
+                    if (!configurations.isEmpty()) {
+                        result = new TwitterClientPool(configurations, getTwitterSettings().getRateLimitMaxWait(), TimeUnit.SECONDS);
+                        clientPool = result;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private <T extends TwitterResponse> T execute(final String endpoint, final TwitterClientPool.ClientCall<T> call) throws TwitterException {
+        final TwitterClientPool pool = getClientPool();
+
+        if (null == pool) {
+            throw new TwitterException("No valid twitter credentials configured");
+        }
+
+        return pool.execute(endpoint, call);
     }
 
     private static Query getQuery(final TweetQuery tweetQuery) {
@@ -134,79 +399,55 @@ public class TwitterTweeter extends Tweeter {
         return query;
     }
 
-    private static class PagedIterator implements Iterator<Tweet> {
+    /**
+     * Window of the most recent Tweets of an incremental search.
+     */
+    private static final class SearchWindow {
 
-        private final TwitterTweeter tweeter;
-        private QueryResult queryResult;
-        private Iterator<Status> statuses;
-        private static final Logger startupLogger = LogManager.getLogger("org.tweetwallfx.startup");
-        private int numberOfPages;
+        private static final Comparator<Tweet> BY_ID_DESCENDING = Comparator.comparingLong(Tweet::getId).reversed();
+        private final int capacity;
+        private long sinceId = -1;
+        private List<Tweet> tweets = Collections.emptyList();
 
-        public PagedIterator(final TwitterTweeter tweeter, final Query query, int numberOfPages) {
-            this.tweeter = tweeter;
-            this.numberOfPages = --numberOfPages;
-            queryNext(query);
+        private SearchWindow(final TweetQuery tweetQuery) {
+            this.capacity = null == tweetQuery.getCount()
+                    ? DEFAULT_SEARCH_COUNT
+                    : tweetQuery.getCount();
         }
 
-        private void queryNext(final Query query) {
-            numberOfPages--;
-            if (null == query) {
-                statuses = null;
-            } else {
-                Configuration configuration = TwitterOAuth.getConfiguration();
-                if (null == configuration) {
-                    queryResult = null;
-                    statuses = null;
-                    return;
-                }
-                final Twitter twitter = new TwitterFactory(configuration).getInstance();
-
-                try {
-                    startupLogger.trace("Querying next page: " + query);
-                    queryResult = twitter.search(query);
-                    if (null != queryResult) {
-                        LOGGER.info("RateLimit: " + queryResult.getRateLimitStatus().getRemaining() + "/" + queryResult.getRateLimitStatus().getLimit()
-                                + " resetting in " + queryResult.getRateLimitStatus().getSecondsUntilReset() + "s");
-                        statuses = queryResult.getTweets().iterator();
-                    }
-                } catch (TwitterException ex) {
-                    startupLogger.trace("Querying next page failed: " + query, ex);
-                    throw new InternalServerErrorException(ex);
-                }
+        private void merge(final List<Status> statuses) {
+            if (statuses.isEmpty()) {
+                return;
             }
-        }
 
-        @Override
-        public boolean hasNext() {
-            if (null == statuses) {
-                // no more twitter status messages
-                return false;
-            } else if (statuses.hasNext()) {
-                // twitter status messages available
-                return true;
-            } else {
-                if (numberOfPages == 0) {
-                    return false;
-                } else {
-                    // query next twitter status messages page
-                    queryNext(queryResult.nextQuery());
-                    return null != statuses && statuses.hasNext();
-                }
-            }
-        }
-
-        @Override
-        public Tweet next() {
-            if (hasNext()) {
-                return new TwitterTweet(statuses.next());
-            } else {
-                throw new NoSuchElementException();
-            }
+            final List<Tweet> merged = new ArrayList<>(statuses.size() + tweets.size());
+            statuses.stream()
+                    .filter(status -> status.getId() > sinceId)
+                    .map(TwitterTweet::new)
+                    .forEach(merged::add);
+            merged.addAll(tweets);
+            tweets = Collections.unmodifiableList(merged.stream()
+                    .sorted(BY_ID_DESCENDING)
+                    .limit(capacity)
+                    .collect(Collectors.toList()));
+            sinceId = Math.max(sinceId, statuses.stream().mapToLong(Status::getId).max().getAsLong());
         }
     }
 
     @Override
     public void shutdown() {
         streamCache.forEach(TwitterTweetStream::shutdown);
+
+        if (null != pageFetcher) {
+            pageFetcher.shutdownNow();
+        }
+
+        if (null != ownAsyncExecutor) {
+            ownAsyncExecutor.shutdownNow();
+        }
+
+        if (null != journal) {
+            journal.close();
+        }
     }
 }
@@ -0,0 +1,159 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 TweetWallFX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tweetwall.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Property based test checking the order of {@link NaturalSortKey} against
+ * {@link StringNumberComparator} on random Strings.
+ * <p>
+ * The key order matches the comparator for Strings without leading zeros and
+ * with ASCII digits only; the documented differences are outside of that
+ * domain. On all Strings the key order has to be a total order, which the
+ * comparator is not.
+ */
+public class NaturalSortKeyTest {
+
+    private static final long SEED = 0x50b7c0deL;
+    private static final int RUNS = 200_000;
+    private static final String TEXT_CHARS = "aAbz -_./:~\u007f\u00e9\u4e2d\uffff\ud83d\ude00";
+    private static final String DIGITS = "0123456789";
+    private static final String OTHER_DIGITS = "\u0660\u0663\u0669\u0966\u096f\uff10\uff15";
+
+    @Test
+    public void compareToMatchesComparator() {
+        final Random random = new Random(SEED);
+
+        for (int run = 0; run < RUNS; run++) {
+            final String string1 = randomString(random, false);
+            final String string2 = random.nextBoolean()
+                    ? string1 + randomString(random, false)
+                    : randomString(random, false);
+
+            assertEquals("\"" + string1 + "\" <> \"" + string2 + "\"",
+                    Integer.signum(StringNumberComparator.INSTANCE.compare(string1, string2)),
+                    Integer.signum(NaturalSortKey.of(string1).compareTo(NaturalSortKey.of(string2))));
+        }
+    }
+
+    @Test
+    public void sortMatchesComparator() {
+        final Random random = new Random(SEED);
+
+        for (int run = 0; run < 1_000; run++) {
+            final List<String> list = new ArrayList<>();
+
+            for (int i = random.nextInt(50); i > 0; i--) {
+                list.add(randomString(random, false));
+            }
+
+            final List<String> expected = new ArrayList<>(list);
+            expected.sort(StringNumberComparator.INSTANCE);
+            NaturalSortKey.sort(list);
+
+            for (int i = 0; i < list.size(); i++) {
+                assertEquals(list.toString(), 0, StringNumberComparator.INSTANCE.compare(expected.get(i), list.get(i)));
+            }
+        }
+    }
+
+    @Test
+    public void compareToIsTotalOrder() {
+        final Random random = new Random(SEED);
+
+        for (int run = 0; run < RUNS; run++) {
+            final NaturalSortKey key1 = NaturalSortKey.of(randomString(random, true));
+            final NaturalSortKey key2 = NaturalSortKey.of(randomString(random, true));
+            final NaturalSortKey key3 = NaturalSortKey.of(randomString(random, true));
+            final String message = key1.getString() + " <> " + key2.getString() + " <> " + key3.getString();
+            final int result12 = Integer.signum(key1.compareTo(key2));
+
+            assertEquals(message, -result12, Integer.signum(key2.compareTo(key1)));
+            assertEquals(message, 0 == result12, key1.equals(key2));
+            assertEquals(message, result12, Integer.signum(compareUnsigned(key1.toByteArray(), key2.toByteArray())));
+
+            if (result12 <= 0 && key2.compareTo(key3) <= 0) {
+                assertTrue(message, key1.compareTo(key3) <= 0);
+            }
+        }
+    }
+
+    private static int compareUnsigned(final byte[] bytes1, final byte[] bytes2) {
+        for (int i = 0; i < Math.min(bytes1.length, bytes2.length); i++) {
+            if (bytes1[i] != bytes2[i]) {
+                return (bytes1[i] & 0xff) - (bytes2[i] & 0xff);
+            }
+        }
+
+        return bytes1.length - bytes2.length;
+    }
+
+    /**
+     * Creates a random String of text parts and numbers. Without
+     * {@code anyNumbers} the numbers have no leading zeros and consist of
+     * ASCII digits only.
+     */
+    private static String randomString(final Random random, final boolean anyNumbers) {
+        final StringBuilder sb = new StringBuilder();
+        boolean number = random.nextBoolean();
+
+        for (int parts = random.nextInt(6); parts > 0; parts--, number = !number) {
+            if (number) {
+                appendNumber(random, sb, anyNumbers);
+            } else {
+                for (int i = 1 + random.nextInt(3); i > 0; i--) {
+                    sb.append(TEXT_CHARS.charAt(random.nextInt(TEXT_CHARS.length())));
+                }
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static void appendNumber(final Random random, final StringBuilder sb, final boolean anyNumbers) {
+        // mostly short numbers, sometimes ones exceeding the range of a long
+        final int length = random.nextInt(8) == 0
+                ? 1 + random.nextInt(30)
+                : 1 + random.nextInt(3);
+        final String digits = anyNumbers && random.nextInt(4) == 0
+                ? OTHER_DIGITS
+                : DIGITS;
+
+        if (!anyNumbers && length > 1) {
+            sb.append(DIGITS.charAt(1 + random.nextInt(DIGITS.length() - 1)));
+        } else {
+            sb.append(digits.charAt(random.nextInt(digits.length())));
+        }
+
+        for (int i = 1; i < length; i++) {
+            sb.append(digits.charAt(random.nextInt(digits.length())));
+        }
+    }
+}
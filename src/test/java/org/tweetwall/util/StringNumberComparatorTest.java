@@ -0,0 +1,191 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 TweetWallFX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tweetwall.util;
+
+import java.math.BigInteger;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Property based test checking that {@link StringNumberComparator} orders
+ * random Strings the same way as the {@link BigInteger} based implementation
+ * it replaced.
+ */
+public class StringNumberComparatorTest {
+
+    private static final long SEED = 0x5eed2018L;
+    private static final int RUNS = 200_000;
+    private static final String TEXT_CHARS = "aAbz -_.~\u00e9\u4e2d\ud83d\ude00";
+    private static final String DIGITS = "0123456789";
+    /**
+     * Digits of other scripts, which {@link Character#isDigit(char)} accepts
+     * as well.
+     */
+    private static final String OTHER_DIGITS = "\u0660\u0663\u0669\u0966\u096f\uff10\uff15";
+
+    @Test
+    public void compareMatchesLegacyImplementation() {
+        final Random random = new Random(SEED);
+
+        for (int run = 0; run < RUNS; run++) {
+            final String string1 = randomString(random);
+            // similar Strings exercise the deeper parts of the comparison
+            final String string2 = random.nextBoolean()
+                    ? mutate(random, string1)
+                    : randomString(random);
+
+            assertEquals("\"" + string1 + "\" <> \"" + string2 + "\"",
+                    Integer.signum(LegacyStringNumberComparator.INSTANCE.compare(string1, string2)),
+                    Integer.signum(StringNumberComparator.INSTANCE.compare(string1, string2)));
+        }
+    }
+
+    private static String randomString(final Random random) {
+        final StringBuilder sb = new StringBuilder();
+
+        for (int parts = random.nextInt(6); parts > 0; parts--) {
+            if (random.nextBoolean()) {
+                appendNumber(random, sb);
+            } else {
+                for (int i = 1 + random.nextInt(3); i > 0; i--) {
+                    sb.append(TEXT_CHARS.charAt(random.nextInt(TEXT_CHARS.length())));
+                }
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static void appendNumber(final Random random, final StringBuilder sb) {
+        // mostly short numbers, sometimes ones exceeding the range of a long
+        final int length = random.nextInt(8) == 0
+                ? 1 + random.nextInt(30)
+                : 1 + random.nextInt(3);
+        final String digits = random.nextInt(6) == 0
+                ? OTHER_DIGITS
+                : DIGITS;
+
+        for (int i = 0; i < length; i++) {
+            sb.append(digits.charAt(random.nextInt(digits.length())));
+        }
+    }
+
+    private static String mutate(final Random random, final String string) {
+        if (string.isEmpty()) {
+            return randomString(random);
+        }
+
+        final StringBuilder sb = new StringBuilder(string);
+        final int index = random.nextInt(sb.length());
+
+        switch (random.nextInt(4)) {
+            case 0:
+                sb.insert(index, '0');
+                break;
+            case 1:
+                sb.setCharAt(index, DIGITS.charAt(random.nextInt(DIGITS.length())));
+                break;
+            case 2:
+                sb.deleteCharAt(index);
+                break;
+            default:
+                sb.append(randomString(random));
+                break;
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * The implementation of {@link StringNumberComparator} before it was
+     * rewritten to compare without allocating.
+     */
+    private static final class LegacyStringNumberComparator implements Comparator<String> {
+
+        private static final Comparator<String> INSTANCE = new LegacyStringNumberComparator();
+
+        @Override
+        public int compare(final String string1, final String string2) {
+            final Iterator<String> iterator1 = new StringNumberPartIterator(string1);
+            final Iterator<String> iterator2 = new StringNumberPartIterator(string2);
+
+            while (iterator1.hasNext() && iterator2.hasNext()) {
+                final String part1 = iterator1.next();
+                final String part2 = iterator2.next();
+                final int result;
+
+                if (isNumber(part1) && isNumber(part2)) {
+                    result = new BigInteger(part1).compareTo(new BigInteger(part2));
+                } else {
+                    result = part1.compareTo(part2);
+                }
+
+                if (0 != result) {
+                    return result;
+                }
+            }
+
+            return Integer.compare(string1.length(), string2.length());
+        }
+
+        private static boolean isNumber(final String string) {
+            return Character.isDigit(string.charAt(0));
+        }
+    }
+
+    private static class StringNumberPartIterator implements Iterator<String> {
+
+        private final String string;
+        private int index = 0;
+
+        private StringNumberPartIterator(final String string) {
+            this.string = string;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < string.length();
+        }
+
+        @Override
+        public String next() {
+            boolean isDigit = Character.isDigit(string.charAt(index));
+            int partIndexEnd = index + 1;
+
+            while (partIndexEnd < string.length()) {
+                if (isDigit ^ Character.isDigit(string.charAt(partIndexEnd))) {
+                    break;
+                }
+                partIndexEnd++;
+            }
+
+            final String result = string.substring(index, partIndexEnd);
+            index = partIndexEnd;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 TweetWallFX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tweetwallfx.tweet.api;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+import org.junit.Test;
+import org.tweetwallfx.tweet.api.entry.EmojiTweetEntry;
+import org.tweetwallfx.tweet.api.entry.HashtagTweetEntry;
+import org.tweetwallfx.tweet.api.entry.MediaTweetEntry;
+import org.tweetwallfx.tweet.api.entry.SymbolTweetEntry;
+import org.tweetwallfx.tweet.api.entry.TweetEntry;
+import org.tweetwallfx.tweet.api.entry.UrlTweetEntry;
+import org.tweetwallfx.tweet.api.entry.UserMentionTweetEntry;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Property based test checking that {@link Tweet.TextExtractor#get()} returns
+ * the same text as the stream based implementation it replaced, for random
+ * texts and random entries to remove.
+ */
+public class TextExtractorTest {
+
+    private static final long SEED = 0x7e7e7e7eL;
+    private static final int RUNS = 20_000;
+    private static final int[] CODE_POINTS = {
+        'a', 'b', 'Z', '#', '@', '.', '0', '7',
+        ' ', ' ', ' ', ' ', '\t', '\n', '\u00a0', '\u00e9', '\u4e2d',
+        0x1f600, 0x1f44d, 0x1f1e9, 0x10437};
+
+    @Test
+    public void getMatchesLegacyImplementation() {
+        final Random random = new Random(SEED);
+
+        for (int run = 0; run < RUNS; run++) {
+            final String text = randomText(random);
+            final int codePointCount = text.codePointCount(0, text.length());
+            final boolean withEmojis = random.nextInt(4) == 0;
+            final Tweet.TextExtractor textExtractor = new Tweet.TextExtractor(new TextTweet(text));
+            final Set<TweetEntry> entries = new TreeSet<>(Comparator.comparing(TweetEntry::getStart).reversed());
+
+            for (int i = random.nextInt(5); i > 0; i--) {
+                final TweetEntry entry = randomEntry(random, codePointCount);
+                textExtractor.getTextWithout(entry);
+                entries.add(entry);
+            }
+
+            if (withEmojis) {
+                textExtractor.getTextWithout(EmojiTweetEntry.class);
+                entries.addAll(Arrays.asList(legacyEmojiEntries(text)));
+            }
+
+            assertEquals("text=" + escape(text) + ", entries=" + describe(entries),
+                    legacyGet(text, entries),
+                    textExtractor.get());
+        }
+    }
+
+    private static String randomText(final Random random) {
+        final StringBuilder sb = new StringBuilder();
+
+        for (int i = random.nextInt(24); i > 0; i--) {
+            sb.appendCodePoint(CODE_POINTS[random.nextInt(CODE_POINTS.length)]);
+        }
+
+        return sb.toString();
+    }
+
+    private static TweetEntry randomEntry(final Random random, final int codePointCount) {
+        // also covers empty, reversed and out of range entries
+        final int start = random.nextInt(codePointCount + 4) - 2;
+        final int end = random.nextInt(4) == 0
+                ? start
+                : start + random.nextInt(8) - 1;
+
+        return new TweetEntry() {
+            @Override
+            public String getText() {
+                return "";
+            }
+
+            @Override
+            public int getStart() {
+                return start;
+            }
+
+            @Override
+            public int getEnd() {
+                return end;
+            }
+        };
+    }
+
+    /**
+     * The implementation of {@code TextExtractor.get()} before it was
+     * rewritten as a single pass.
+     */
+    private static String legacyGet(final String text, final Set<TweetEntry> entriesToRemove) {
+        if (entriesToRemove.isEmpty()) {
+            return text;
+        }
+
+        IntStream filteredIndexes = IntStream.empty();
+        for (TweetEntry tweetEntry : entriesToRemove) {
+            final IntStream nextFilter;
+
+            if (tweetEntry.getStart() == tweetEntry.getEnd()) {
+                nextFilter = IntStream.of(tweetEntry.getStart());
+            } else {
+                nextFilter = IntStream.range(tweetEntry.getStart(), tweetEntry.getEnd());
+            }
+
+            filteredIndexes = IntStream.concat(filteredIndexes, nextFilter);
+        }
+
+        final Set<Integer> indexesToFilterOut = filteredIndexes.boxed().collect(toSet());
+        final int[] codePoints = text.codePoints().toArray();
+        final int[] filteredCodePoints = IntStream.range(0, codePoints.length)
+                .filter(i -> !indexesToFilterOut.contains(i))
+                .map(i -> codePoints[i])
+                .toArray();
+
+        return new String(filteredCodePoints, 0, filteredCodePoints.length)
+                .replaceAll("  *", " ")
+                .trim();
+    }
+
+    /**
+     * The implementation of {@code Tweet.getEmojiEntries()} before the text
+     * analysis was shared.
+     */
+    private static EmojiTweetEntry[] legacyEmojiEntries(final String text) {
+        final int[] codePoints = text.codePoints().toArray();
+
+        return IntStream.range(0, codePoints.length)
+                .filter(i -> codePoints[i] >= 0x1f000)
+                .mapToObj(i -> new EmojiTweetEntry(new String(codePoints, i, 1), i))
+                .toArray(i -> new EmojiTweetEntry[i]);
+    }
+
+    private static String escape(final String text) {
+        final StringBuilder sb = new StringBuilder("\"");
+
+        text.codePoints().forEach(cp -> sb.append(cp >= ' ' && cp < 0x7f
+                ? String.valueOf((char) cp)
+                : String.format("\\u{%x}", cp)));
+
+        return sb.append('"').toString();
+    }
+
+    private static String describe(final Set<TweetEntry> entries) {
+        final StringBuilder sb = new StringBuilder("[");
+
+        for (final TweetEntry entry : entries) {
+            sb.append(sb.length() > 1 ? ", " : "")
+                    .append(entry.getStart())
+                    .append("..")
+                    .append(entry.getEnd());
+        }
+
+        return sb.append(']').toString();
+    }
+
+    private static final class TextTweet implements Tweet {
+
+        private final String text;
+
+        private TextTweet(final String text) {
+            this.text = text;
+        }
+
+        @Override
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public Date getCreatedAt() {
+            return null;
+        }
+
+        @Override
+        public int getFavoriteCount() {
+            return 0;
+        }
+
+        @Override
+        public long getId() {
+            return 0;
+        }
+
+        @Override
+        public long getInReplyToTweetId() {
+            return -1;
+        }
+
+        @Override
+        public long getInReplyToUserId() {
+            return -1;
+        }
+
+        @Override
+        public String getInReplyToScreenName() {
+            return null;
+        }
+
+        @Override
+        public String getLang() {
+            return null;
+        }
+
+        @Override
+        public int getRetweetCount() {
+            return 0;
+        }
+
+        @Override
+        public Tweet getRetweetedTweet() {
+            return null;
+        }
+
+        @Override
+        public User getUser() {
+            return null;
+        }
+
+        @Override
+        public boolean isRetweet() {
+            return false;
+        }
+
+        @Override
+        public boolean isTruncated() {
+            return false;
+        }
+
+        @Override
+        public HashtagTweetEntry[] getHashtagEntries() {
+            return new HashtagTweetEntry[0];
+        }
+
+        @Override
+        public MediaTweetEntry[] getMediaEntries() {
+            return new MediaTweetEntry[0];
+        }
+
+        @Override
+        public SymbolTweetEntry[] getSymbolEntries() {
+            return new SymbolTweetEntry[0];
+        }
+
+        @Override
+        public UrlTweetEntry[] getUrlEntries() {
+            return new UrlTweetEntry[0];
+        }
+
+        @Override
+        public UserMentionTweetEntry[] getUserMentionEntries() {
+            return new UserMentionTweetEntry[0];
+        }
+    }
+}
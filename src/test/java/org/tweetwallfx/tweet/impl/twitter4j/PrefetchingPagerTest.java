@@ -0,0 +1,215 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014-2018 TweetWallFX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tweetwallfx.tweet.impl.twitter4j;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.junit.After;
+import org.junit.Test;
+import org.tweetwallfx.tweet.api.Tweet;
+import twitter4j.Query;
+import twitter4j.QueryResult;
+import twitter4j.Status;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of {@link PrefetchingPager} against a fake search endpoint answering
+ * each page after an injected latency.
+ */
+public class PrefetchingPagerTest {
+
+    private static final int PAGE_SIZE = 3;
+    private static final long LATENCY_MILLIS = 20;
+    private static final long SETTLE_MILLIS = 200;
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void tweetsAreReturnedInPageOrder() {
+        final FakeSearch search = new FakeSearch(10);
+
+        assertEquals(LongStream.range(0, 4 * PAGE_SIZE).boxed().collect(Collectors.toList()),
+                ids(new PrefetchingPager(search, executor, firstQuery(), 4, 3)));
+        assertEquals(4, search.fetched.get());
+    }
+
+    @Test
+    public void numberOfPagesIsTheNumberOfPagesFetched() {
+        for (int numberOfPages = 0; numberOfPages <= 2; numberOfPages++) {
+            final FakeSearch search = new FakeSearch(10);
+
+            assertEquals(numberOfPages * PAGE_SIZE, ids(new PrefetchingPager(search, executor, firstQuery(), numberOfPages, 2)).size());
+            assertEquals(numberOfPages, search.fetched.get());
+        }
+    }
+
+    @Test
+    public void fetchingStopsAtTheLastPage() {
+        final FakeSearch search = new FakeSearch(2);
+
+        assertEquals(2 * PAGE_SIZE, ids(new PrefetchingPager(search, executor, firstQuery(), 5, 5)).size());
+        assertEquals(2, search.fetched.get());
+    }
+
+    @Test
+    public void readAheadBoundsThePagesFetchedAheadOfTheConsumer() throws InterruptedException {
+        final FakeSearch search = new FakeSearch(10);
+        final PrefetchingPager pager = new PrefetchingPager(search, executor, firstQuery(), 10, 2);
+
+        // nothing consumed yet: the first page and one page ahead
+        awaitSettled(search.fetched::get, 2);
+
+        // consuming the first Tweet takes the first page, so one more is requested
+        assertTrue(pager.tryAdvance(tweet -> assertEquals(0, tweet.getId())));
+        awaitSettled(search.fetched::get, 3);
+        assertEquals(9 * PAGE_SIZE, pager.estimateSize());
+    }
+
+    @Test
+    public void cancelStopsFetching() throws InterruptedException {
+        final FakeSearch search = new FakeSearch(10);
+        final PrefetchingPager pager = new PrefetchingPager(search, executor, firstQuery(), 10, 3);
+        final List<Long> ids = new ArrayList<>();
+
+        assertTrue(pager.tryAdvance(tweet -> ids.add(tweet.getId())));
+        final Stream<Tweet> stream = StreamSupport.stream(pager, false).onClose(pager::cancel);
+        stream.close();
+        final int fetchedAtCancel = search.fetched.get();
+
+        Thread.sleep(SETTLE_MILLIS);
+        assertEquals(fetchedAtCancel, search.fetched.get());
+        assertEquals(0, pager.estimateSize());
+
+        // the Tweets of the current page are still returned, but no further pages
+        pager.forEachRemaining(tweet -> ids.add(tweet.getId()));
+        assertEquals(LongStream.range(0, PAGE_SIZE).boxed().collect(Collectors.toList()), ids);
+    }
+
+    private static Query firstQuery() {
+        return new Query("0").count(PAGE_SIZE);
+    }
+
+    private static List<Long> ids(final PrefetchingPager pager) {
+        return StreamSupport.stream(pager, false)
+                .map(Tweet::getId)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Waits until {@code actual} reaches {@code expected} and checks that it
+     * stays there for a while.
+     */
+    private static void awaitSettled(final IntSupplier actual, final int expected) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+
+        while (actual.getAsInt() < expected) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Expected " + expected + " but was " + actual.getAsInt());
+            }
+
+            Thread.sleep(5);
+        }
+
+        Thread.sleep(SETTLE_MILLIS);
+        assertEquals(expected, actual.getAsInt());
+    }
+
+    /**
+     * Fake search endpoint serving {@code pages} pages of {@link #PAGE_SIZE}
+     * Tweets with consecutive ids. The query text holds the page number.
+     */
+    private static final class FakeSearch implements Function<Query, QueryResult> {
+
+        private final int pages;
+        private final AtomicInteger fetched = new AtomicInteger();
+
+        private FakeSearch(final int pages) {
+            this.pages = pages;
+        }
+
+        @Override
+        public QueryResult apply(final Query query) {
+            fetched.incrementAndGet();
+
+            try {
+                Thread.sleep(LATENCY_MILLIS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+
+            final int page = Integer.parseInt(query.getQuery());
+            final List<Status> statuses = LongStream.range(page * PAGE_SIZE, (page + 1) * PAGE_SIZE)
+                    .mapToObj(FakeSearch::status)
+                    .collect(Collectors.toList());
+            final Query nextQuery = page + 1 < pages
+                    ? new Query(String.valueOf(page + 1)).count(PAGE_SIZE)
+                    : null;
+
+            return (QueryResult) Proxy.newProxyInstance(QueryResult.class.getClassLoader(), new Class<?>[]{QueryResult.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getTweets":
+                        return statuses;
+                    case "nextQuery":
+                        return nextQuery;
+                    case "hasNext":
+                        return null != nextQuery;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+
+        private static Status status(final long id) {
+            return (Status) Proxy.newProxyInstance(Status.class.getClassLoader(), new Class<?>[]{Status.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getId":
+                        return id;
+                    case "getUser":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014-2018 TweetWallFX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tweetwallfx.tweet.impl.twitter4j;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import twitter4j.RateLimitStatus;
+import twitter4j.TwitterException;
+import twitter4j.TwitterResponse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of {@link RateLimitScheduler} driven by a fake clock, whose sleeps
+ * are recorded and advance the time, and fake responses reporting the rate
+ * limit of their endpoint.
+ */
+public class RateLimitSchedulerTest {
+
+    private static final String ENDPOINT = RateLimitScheduler.SEARCH;
+    private static final long START_MILLIS = 1_500_000_000_000L;
+    private static final long SECOND = 1_000;
+
+    private final FakeClock clock = new FakeClock();
+
+    @Test
+    public void callsArePacedAcrossTheWindow() throws TwitterException {
+        final RateLimitScheduler scheduler = new RateLimitScheduler(60, TimeUnit.SECONDS, clock);
+        final FakeEndpoint endpoint = new FakeEndpoint(5, 40 * SECOND);
+
+        // the first call learns the budget: 4 calls left for the 40s until the reset
+        for (int i = 0; i < 5; i++) {
+            scheduler.execute(ENDPOINT, endpoint::call);
+        }
+
+        assertEquals(Arrays.asList(10 * SECOND, 10 * SECOND, 10 * SECOND), clock.sleeps);
+        assertEquals(0, scheduler.getRemaining(ENDPOINT));
+        assertEquals(5, endpoint.calls);
+    }
+
+    @Test
+    public void exhaustedWindowQueuesTheNextCallBehindTheReset() throws TwitterException {
+        final RateLimitScheduler scheduler = new RateLimitScheduler(60, TimeUnit.SECONDS, clock);
+        final FakeEndpoint endpoint = new FakeEndpoint(2, 40 * SECOND);
+
+        scheduler.execute(ENDPOINT, endpoint::call);
+        scheduler.execute(ENDPOINT, endpoint::call);
+        assertEquals(0, scheduler.getRemaining(ENDPOINT));
+
+        // the next call waits for the reset and is answered from the new window
+        scheduler.execute(ENDPOINT, endpoint::call);
+        assertEquals(Arrays.asList(40 * SECOND), clock.sleeps);
+        assertEquals(1, scheduler.getRemaining(ENDPOINT));
+    }
+
+    @Test
+    public void callsWithUnknownBudgetQueueBehindTheReset() throws TwitterException {
+        final RateLimitScheduler scheduler = new RateLimitScheduler(60, TimeUnit.SECONDS, clock);
+        final FakeEndpoint endpoint = new FakeEndpoint(1, 30 * SECOND);
+        scheduler.execute(ENDPOINT, endpoint::call);
+
+        // the sleeps do not advance the time and the responses report nothing,
+        // so every call is reserved while the budget of the new window is unknown
+        clock.advancing = false;
+
+        for (int i = 0; i < 3; i++) {
+            scheduler.execute(ENDPOINT, () -> response(null));
+        }
+
+        assertEquals(Arrays.asList(30 * SECOND, 30 * SECOND, 30 * SECOND), clock.sleeps);
+    }
+
+    @Test
+    public void callsBeyondMaxWaitAreRejected() throws TwitterException {
+        final RateLimitScheduler scheduler = new RateLimitScheduler(5, TimeUnit.SECONDS, clock);
+        final FakeEndpoint endpoint = new FakeEndpoint(5, 40 * SECOND);
+        scheduler.execute(ENDPOINT, endpoint::call);
+        scheduler.execute(ENDPOINT, endpoint::call);
+
+        // the next slot is 10s away
+        try {
+            scheduler.execute(ENDPOINT, endpoint::call);
+            fail("Call not rejected");
+        } catch (RateLimitScheduler.RejectedException ex) {
+            // expected
+        }
+
+        assertEquals(2, endpoint.calls);
+        assertEquals(0, clock.sleeps.size());
+
+        // once the slot is within maxWait the call goes out
+        clock.now += 5 * SECOND;
+        scheduler.execute(ENDPOINT, endpoint::call);
+        assertEquals(Arrays.asList(5 * SECOND), clock.sleeps);
+    }
+
+    @Test
+    public void getRemainingWhileTheBudgetIsUnknown() throws TwitterException {
+        final RateLimitScheduler scheduler = new RateLimitScheduler(60, TimeUnit.SECONDS, clock);
+        final FakeEndpoint endpoint = new FakeEndpoint(1, 30 * SECOND);
+
+        // nothing known yet
+        assertEquals(Integer.MAX_VALUE, scheduler.getRemaining(ENDPOINT));
+
+        scheduler.execute(ENDPOINT, endpoint::call);
+        assertEquals(0, scheduler.getRemaining(ENDPOINT));
+
+        // a call queued behind the reset leaves nothing before the reset
+        clock.advancing = false;
+        scheduler.execute(ENDPOINT, () -> response(null));
+        assertEquals(0, scheduler.getRemaining(ENDPOINT));
+
+        // the window passed without a response reporting the new one
+        clock.now += 30 * SECOND;
+        assertEquals(Integer.MAX_VALUE, scheduler.getRemaining(ENDPOINT));
+    }
+
+    private static TwitterResponse response(final RateLimitStatus rateLimitStatus) {
+        return (TwitterResponse) Proxy.newProxyInstance(TwitterResponse.class.getClassLoader(), new Class<?>[]{TwitterResponse.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getRateLimitStatus":
+                    return rateLimitStatus;
+                case "getAccessLevel":
+                    return TwitterResponse.READ;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static RateLimitStatus rateLimitStatus(final int limit, final int remaining, final long resetAtMillis) {
+        return (RateLimitStatus) Proxy.newProxyInstance(RateLimitStatus.class.getClassLoader(), new Class<?>[]{RateLimitStatus.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getLimit":
+                    return limit;
+                case "getRemaining":
+                    return remaining;
+                case "getResetTimeInSeconds":
+                    return (int) TimeUnit.MILLISECONDS.toSeconds(resetAtMillis);
+                case "toString":
+                    return "RateLimitStatus{remaining=" + remaining + "}";
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    /**
+     * Clock starting at {@link #START_MILLIS} whose sleeps are recorded and,
+     * while {@code advancing}, advance the time.
+     */
+    private static final class FakeClock implements RateLimitScheduler.Clock {
+
+        private final List<Long> sleeps = new ArrayList<>();
+        private long now = START_MILLIS;
+        private boolean advancing = true;
+
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+
+        @Override
+        public void sleep(final long millis) {
+            sleeps.add(millis);
+
+            if (advancing) {
+                now += millis;
+            }
+        }
+    }
+
+    /**
+     * Endpoint allowing {@code limit} calls per window of {@code windowMillis}
+     * and reporting the remaining calls with each response.
+     */
+    private final class FakeEndpoint {
+
+        private final int limit;
+        private final long windowMillis;
+        private long resetAtMillis = START_MILLIS;
+        private int remaining;
+        private int calls;
+
+        private FakeEndpoint(final int limit, final long windowMillis) {
+            this.limit = limit;
+            this.windowMillis = windowMillis;
+        }
+
+        private TwitterResponse call() {
+            if (clock.now >= resetAtMillis) {
+                resetAtMillis = clock.now + windowMillis;
+                remaining = limit;
+            }
+
+            if (0 == remaining) {
+                fail("Rate limit exceeded at call " + (calls + 1));
+            }
+
+            calls++;
+            remaining--;
+            return response(rateLimitStatus(limit, remaining, resetAtMillis));
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2014-2018 TweetWallFX
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.tweetwallfx.tweet.impl.twitter4j;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import org.junit.Test;
+import org.tweetwallfx.tweet.api.ConsumerLag;
+import org.tweetwallfx.tweet.api.OverflowPolicy;
+import org.tweetwallfx.tweet.api.Tweet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of {@link TweetDispatcher} publishing many Tweets to a fast and a slow
+ * consumer under each {@link OverflowPolicy}, and of the reported consumer
+ * lag.
+ */
+public class TweetDispatcherTest {
+
+    private static final int TWEETS = 2_000_000;
+    private static final int BUFFER_SIZE = 64;
+    private static final long DRAIN_TIMEOUT_MILLIS = 30_000;
+
+    @Test
+    public void blockDeliversEveryTweetInOrder() throws InterruptedException {
+        final List<RecordingConsumer> consumers = stress(OverflowPolicy.BLOCK);
+
+        for (final RecordingConsumer consumer : consumers) {
+            assertEquals(consumer.toString(), TWEETS, consumer.received);
+            assertEquals(consumer.toString(), TWEETS - 1, consumer.lastId);
+            assertEquals(consumer.toString(), 0, consumer.outOfOrder);
+            assertEquals(consumer.toString(), 0, consumer.lag.getDropped());
+        }
+    }
+
+    @Test
+    public void dropOldestSkipsOverwrittenTweets() throws InterruptedException {
+        final List<RecordingConsumer> consumers = stress(OverflowPolicy.DROP_OLDEST);
+
+        for (final RecordingConsumer consumer : consumers) {
+            // each Tweet is either delivered or counted as dropped, never delivered out of order
+            assertEquals(consumer.toString(), TWEETS, consumer.received + consumer.lag.getDropped());
+            assertEquals(consumer.toString(), TWEETS - 1, consumer.lastId);
+            assertEquals(consumer.toString(), 0, consumer.outOfOrder);
+        }
+
+        assertTrue(consumers.toString(), consumers.get(1).lag.getDropped() > 0);
+    }
+
+    @Test
+    public void dropNewestDiscardsForAllConsumers() throws InterruptedException {
+        final List<RecordingConsumer> consumers = stress(OverflowPolicy.DROP_NEWEST);
+        final long published = consumers.get(0).received;
+        long droppedTotal = 0;
+
+        for (final RecordingConsumer consumer : consumers) {
+            // discarded Tweets are never published, so all consumers see the same ones
+            assertEquals(consumer.toString(), published, consumer.received);
+            assertEquals(consumer.toString(), 0, consumer.outOfOrder);
+            assertTrue(consumer.toString(), consumer.lag.getDropped() <= TWEETS - published);
+            droppedTotal += consumer.lag.getDropped();
+        }
+
+        // every discard is charged to at least one lagging consumer
+        assertTrue(consumers.toString(), published < TWEETS);
+        assertTrue(consumers.toString(), droppedTotal >= TWEETS - published);
+    }
+
+    @Test
+    public void getConsumerLagsReportsLagAndDropped() throws InterruptedException {
+        final TweetDispatcher dispatcher = new TweetDispatcher(2, OverflowPolicy.DROP_NEWEST);
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Consumer<Tweet> consumer = tweet -> {
+            entered.countDown();
+            awaitUninterruptibly(release);
+        };
+
+        try {
+            dispatcher.addConsumer(consumer);
+            dispatcher.publish(tweet(0));
+            assertTrue(entered.await(10, TimeUnit.SECONDS));
+
+            // the consumer holds Tweet 0: two more fit into the buffer, three are discarded
+            for (int i = 1; i <= 5; i++) {
+                dispatcher.publish(tweet(i));
+            }
+
+            final List<ConsumerLag> lags = dispatcher.getConsumerLags();
+            assertEquals(1, lags.size());
+            assertSame(consumer, lags.get(0).getConsumer());
+            assertEquals(2, lags.get(0).getLag());
+            assertEquals(3, lags.get(0).getDropped());
+        } finally {
+            release.countDown();
+            dispatcher.shutdown();
+        }
+    }
+
+    private static List<RecordingConsumer> stress(final OverflowPolicy overflowPolicy) throws InterruptedException {
+        final TweetDispatcher dispatcher = new TweetDispatcher(BUFFER_SIZE, overflowPolicy);
+        final List<RecordingConsumer> consumers = new ArrayList<>();
+        consumers.add(new RecordingConsumer(0));
+        consumers.add(new RecordingConsumer(1_000));
+
+        try {
+            consumers.forEach(dispatcher::addConsumer);
+
+            for (int i = 0; i < TWEETS - 1; i++) {
+                dispatcher.publish(tweet(i));
+            }
+
+            // once all consumers caught up the last Tweet fits under any policy,
+            // and seeing it means they are done with all the Tweets before it
+            awaitDrained(() -> dispatcher.getConsumerLags().stream().allMatch(lag -> 0 == lag.getLag()), dispatcher);
+            dispatcher.publish(tweet(TWEETS - 1));
+            awaitDrained(() -> consumers.stream().allMatch(consumer -> consumer.lastId == TWEETS - 1), dispatcher);
+
+            final List<ConsumerLag> lags = dispatcher.getConsumerLags();
+
+            for (int i = 0; i < consumers.size(); i++) {
+                assertSame(consumers.get(i), lags.get(i).getConsumer());
+                assertEquals(0, lags.get(i).getLag());
+                consumers.get(i).lag = lags.get(i);
+            }
+
+            return consumers;
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    private static void awaitDrained(final BooleanSupplier drained, final TweetDispatcher dispatcher) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+
+        while (!drained.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Consumers not drained: " + dispatcher);
+            }
+
+            Thread.sleep(10);
+        }
+    }
+
+    private static void awaitUninterruptibly(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Creates a Tweet that only knows its id.
+     */
+    private static Tweet tweet(final long id) {
+        return (Tweet) Proxy.newProxyInstance(Tweet.class.getClassLoader(), new Class<?>[]{Tweet.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return id;
+                case "toString":
+                    return "Tweet#" + id;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    /**
+     * Consumer recording what it received, optionally pausing every
+     * {@code pauseEvery} Tweets to fall behind the producer.
+     */
+    private static final class RecordingConsumer implements Consumer<Tweet> {
+
+        private final int pauseEvery;
+        private volatile long lastId = -1;
+        private long received;
+        private long outOfOrder;
+        private ConsumerLag lag;
+
+        private RecordingConsumer(final int pauseEvery) {
+            this.pauseEvery = pauseEvery;
+        }
+
+        @Override
+        public void accept(final Tweet tweet) {
+            final long id = tweet.getId();
+
+            if (id <= lastId) {
+                outOfOrder++;
+            }
+
+            received++;
+            lastId = id;
+
+            if (pauseEvery > 0 && 0 == received % pauseEvery) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "RecordingConsumer{pauseEvery=" + pauseEvery
+                    + ", received=" + received
+                    + ", lastId=" + lastId
+                    + ", outOfOrder=" + outOfOrder
+                    + ", dropped=" + (null == lag ? "?" : lag.getDropped()) + "}";
+        }
+    }
+}